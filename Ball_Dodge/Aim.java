@@ -0,0 +1,32 @@
+// Batch aim solver: launch velocities that take balls from their origins to a target in exactly
+// flight seconds under their gravity, for a whole volley in one pass over primitive arrays:
+//   vx = (tx-ox)/T,  vy = (ty-oy-g*T*T/2)/T
+// The loops are branch free so the JIT can vectorize them; all overloads give the same floats
+// as World.aim for a single ball.
+
+class Aim {
+  static void aim(float[] ox, float[] oy, float[] g, int from, int to, float tx, float ty, float T, float[] vx, float[] vy) { // balls from..to-1, one target
+    float h=.5f*T*T;
+    for (int i=from; i<to; i++) {
+      vx[i]=(tx-ox[i])/T;
+      vy[i]=(ty-oy[i]-g[i]*h)/T;
+    }
+  }
+
+  static void aim(float[] ox, float[] oy, float[] g, int from, int to, float[] tx, float[] ty, float T, float[] vx, float[] vy) { // balls from..to-1, target i for ball i
+    float h=.5f*T*T;
+    for (int i=from; i<to; i++) {
+      vx[i]=(tx[i]-ox[i])/T;
+      vy[i]=(ty[i]-oy[i]-g[i]*h)/T;
+    }
+  }
+
+  static void aim(int[] idx, int from, int to, float[] ox, float[] oy, float[] g, float tx, float ty, float T, float[] vx, float[] vy) { // balls idx[from..to-1], one target
+    float h=.5f*T*T;
+    for (int e=from; e<to; e++) {
+      int i=idx[e];
+      vx[i]=(tx-ox[i])/T;
+      vy[i]=(ty-oy[i]-g[i]*h)/T;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+// Counts the bytes allocated by the steady-state World step loop, which must be zero:
+// java AllocationCheck [frames] [balls]   exits with status 1 if any allocation is seen.
+
+import java.lang.management.ManagementFactory;
+
+class AllocationCheck {
+  static long allocatedBytes() { // bytes allocated so far by the current thread, -1 if the JVM cannot tell
+    java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+    if (!(mx instanceof com.sun.management.ThreadMXBean)) return -1;
+    return ((com.sun.management.ThreadMXBean)mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  static long bytesPerRun(World w, int frames) { // steps w with a circling mouse and returns the bytes allocated while doing so
+    long before = allocatedBytes();
+    for (int k=0; k<frames; k++) {
+      float a = k*0.05f;
+      w.step(300+200*(float)Math.cos(a), 300+200*(float)Math.sin(a));
+    }
+    return allocatedBytes()-before;
+  }
+
+  public static void main(String[] args) {
+    int frames = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+    World w = new World(600,600);
+    if (args.length>1) {w.balls.clear(); w.makeBalls(Integer.parseInt(args[1]));}
+    if (allocatedBytes()<0) {System.out.println("allocation counting not supported by this JVM"); return;}
+    for (int k=0; k<3; k++) bytesPerRun(w,frames); // warm up so the JIT and lazily built tables are out of the way
+    long overhead = bytesPerRun(w,0); // what reading the counter itself costs
+    long bytes = bytesPerRun(w,frames)-overhead;
+    System.out.println(frames+" frames with "+w.balls.n+" balls allocated "+bytes+" bytes");
+    if (bytes>0) System.exit(1);
+  }
+}
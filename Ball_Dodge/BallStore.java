@@ -0,0 +1,86 @@
+// Balls kept as parallel primitive arrays (structure of arrays) so that tens of thousands
+// of them can be moved, tested and drawn without chasing pointers or feeding the GC.
+// Slots 0..n-1 are live; remove() compacts by moving the last ball into the freed slot.
+// Slots whose motion stops following the plain integration (launch, bounce, compaction), or
+// whose color or radius changes, are listed once in changed until a StreamState takes them,
+// so spectators are sent what changed without scanning every ball.
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BallStore {
+  int n=0;                 // number of live balls
+  long removals=0;         // balls removed so far, each of which may have moved another ball to a new slot
+  float[] x, y;            // center
+  float[] px, py;          // center at the previous step, for render interpolation
+  float[] vx, vy;          // velocity
+  float[] hx, hy;          // home position, where the ball is relaunched from
+  float[] ox, oy;          // origin of the current trajectory
+  float[] ovx, ovy;        // initial velocity of the current trajectory
+  long[] lt;               // step at which the current trajectory starts
+  float[] gy;              // vertical acceleration
+  float[] r;               // radius
+  float[] m;               // mass, used when balls bounce off each other
+  int[] c;                 // color
+  int[] f;                 // frame counter since last launch
+  boolean[] collide;       // true while the ball overlaps the player
+  int[] changed;           // slots changed since they were last taken, each listed once
+  boolean[] marked;        // slots in changed
+  AtomicInteger changes=new AtomicInteger();  // length of changed, the chunks of a parallel step mark their own balls at once
+
+  BallStore(int capacity) {
+    capacity=Math.max(capacity,1);
+    x=new float[capacity]; y=new float[capacity];
+    px=new float[capacity]; py=new float[capacity];
+    vx=new float[capacity]; vy=new float[capacity];
+    hx=new float[capacity]; hy=new float[capacity];
+    ox=new float[capacity]; oy=new float[capacity];
+    ovx=new float[capacity]; ovy=new float[capacity]; lt=new long[capacity];
+    gy=new float[capacity]; r=new float[capacity]; m=new float[capacity];
+    c=new int[capacity]; f=new int[capacity];
+    collide=new boolean[capacity];
+    changed=new int[capacity]; marked=new boolean[capacity];
+  }
+
+  int capacity() {return x.length;}
+
+  int add(float phx, float phy, float pgy, float pr, int pc, int pf) { // adds a ball resting at its home, returns its slot
+    if (n==x.length) grow(2*n);
+    int i=n++;
+    hx[i]=phx; hy[i]=phy; x[i]=px[i]=phx; y[i]=py[i]=phy;
+    vx[i]=0; vy[i]=0; ox[i]=phx; oy[i]=phy; ovx[i]=0; ovy[i]=0; lt[i]=0; gy[i]=pgy; r[i]=pr; m[i]=1; c[i]=pc; f[i]=pf;
+    collide[i]=false;
+    mark(i);
+    return i;
+  }
+
+  void remove(int i) { // removes ball i, the last ball takes its slot
+    removals++;
+    int j=--n;
+    if (i==j) return;
+    mark(i);
+    x[i]=x[j]; y[i]=y[j]; px[i]=px[j]; py[i]=py[j]; vx[i]=vx[j]; vy[i]=vy[j];
+    hx[i]=hx[j]; hy[i]=hy[j]; ox[i]=ox[j]; oy[i]=oy[j]; ovx[i]=ovx[j]; ovy[i]=ovy[j]; lt[i]=lt[j]; gy[i]=gy[j]; r[i]=r[j]; m[i]=m[j];
+    c[i]=c[j]; f[i]=f[j]; collide[i]=collide[j];
+  }
+
+  void clear() {n=0; removals++;}
+
+  void mark(int i) {if (!marked[i]) {marked[i]=true; changed[changes.getAndIncrement()]=i;}}  // lists slot i as changed
+
+  void markAll() {for (int i=0; i<n; i++) mark(i);}
+
+  void color(int i, int col) {if (c[i]!=col) {c[i]=col; mark(i);}}
+
+  void grow(int capacity) {
+    x=java.util.Arrays.copyOf(x,capacity); y=java.util.Arrays.copyOf(y,capacity);
+    px=java.util.Arrays.copyOf(px,capacity); py=java.util.Arrays.copyOf(py,capacity);
+    vx=java.util.Arrays.copyOf(vx,capacity); vy=java.util.Arrays.copyOf(vy,capacity);
+    hx=java.util.Arrays.copyOf(hx,capacity); hy=java.util.Arrays.copyOf(hy,capacity);
+    ox=java.util.Arrays.copyOf(ox,capacity); oy=java.util.Arrays.copyOf(oy,capacity);
+    ovx=java.util.Arrays.copyOf(ovx,capacity); ovy=java.util.Arrays.copyOf(ovy,capacity); lt=java.util.Arrays.copyOf(lt,capacity);
+    gy=java.util.Arrays.copyOf(gy,capacity); r=java.util.Arrays.copyOf(r,capacity); m=java.util.Arrays.copyOf(m,capacity);
+    c=java.util.Arrays.copyOf(c,capacity); f=java.util.Arrays.copyOf(f,capacity);
+    collide=java.util.Arrays.copyOf(collide,capacity);
+    changed=java.util.Arrays.copyOf(changed,capacity); marked=java.util.Arrays.copyOf(marked,capacity);
+  }
+}
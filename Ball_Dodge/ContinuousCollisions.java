@@ -0,0 +1,115 @@
+// Continuous collision detection between the balls and the player. Within a step each ball moves
+// along the chord of its path and the spring disc sweeps from its previous to its new position,
+// so the first time of impact solves a quadratic in the relative motion; nothing can tunnel through
+// the player, and each contact is counted once, when it begins.
+// The chord differs from the parabola by at most g*dt*dt/8 (0.003 pixel at 120 Hz).
+//
+// Balls far from the player are not tested every step. Ball speeds are bounded by vmax and the
+// spring has moved a total distance S(t), so a ball at gap g from the player at time t cannot touch
+// it before K(t') = vmax*t' + S(t') reaches g + K(t). Balls wait in a bucketed priority queue
+// (a timing wheel) on that key and only those whose key has been reached are tested; balls in
+// contact or just relaunched are tested in the next step. Keys past the wheel's horizon are filed
+// in its last bucket, which only tests them early.
+
+class ContinuousCollisions {
+  static final int BUCKETS=1024;
+
+  World w;
+  int[] head = new int[BUCKETS];  // first ball of each bucket, -1 if empty
+  int[] next = new int[0], prev = new int[0], bucket = new int[0];  // doubly linked bucket lists by ball
+  int[] due = new int[0];         // balls taken from the wheel this step
+  long cur=0;                     // last bucket processed, buckets cover width W of K each
+  double W=1;
+  int size=0;                     // balls on the wheel
+  long removals=-1;               // BallStore.removals when the wheel was built, slots may have moved since
+  double t=0, S=0;                // time and total spring travel
+  float vmax=0;                   // bound on ball speed
+  int tested=0;                   // balls tested in the last step, to see what the wheel saves
+
+  ContinuousCollisions(World pw) {w=pw;}
+
+  double K() {return vmax*t+S;}
+
+  float speedBound(int i) { // fastest ball i can go before its next relaunch
+    BallStore b=w.balls;
+    float vy=Math.abs(b.vy[i])+Math.abs(b.gy[i])*w.respawn;
+    return (float)Math.sqrt(b.vx[i]*b.vx[i]+vy*vy);
+  }
+
+  void rebuild() { // files every ball for testing in this step
+    BallStore b=w.balls;
+    int c=b.capacity();
+    if (next.length<c) {next=new int[c]; prev=new int[c]; bucket=new int[c]; due=new int[c];}
+    for (int i=0; i<b.n; i++) vmax=Math.max(vmax,speedBound(i));
+    W=Math.max(1,vmax*w.dt);  // K grows by at least W per step, so each step reaches a new bucket
+    cur=(long)Math.floor(K()/W)-1;  // so that cur+1 is reached now: when rebuilt every step, balls filed further would never be due
+    java.util.Arrays.fill(head,-1);
+    size=0;
+    removals=b.removals;
+    for (int i=0; i<b.n; i++) file(i,cur+1);
+  }
+
+  void process() { // called once per step, after the balls moved
+    BallStore b=w.balls;
+    Spring s=w.springs[0];
+    t+=w.dt;
+    S+=Math.sqrt(World.sq(s.tempxpos-s.prevxpos)+World.sq(s.tempypos-s.prevypos));
+    if (size!=b.n || removals!=b.removals || w.ballCollisions) rebuild(); // slots moved or bounces broke the speed bounds
+    for (int i=0; i<b.n; i++) if (b.f[i]==0) { // relaunched this step
+      float v=speedBound(i);
+      if (v>vmax) {vmax=v; rebuild(); break;}  // keys were computed with a smaller bound
+      unfile(i); file(i,cur+1);
+    }
+    long last=(long)Math.floor(K()/W);
+    int n=0;
+    for (long k=cur+1; k<=last && size>0; k++) { // empties every bucket whose keys have been reached
+      int h=(int)(k%BUCKETS);
+      for (int i=head[h]; i>=0; i=next[i]) {due[n++]=i; size--;}
+      head[h]=-1;
+      if (k-cur>=BUCKETS) break;  // went round the whole wheel
+    }
+    cur=Math.max(cur,last);
+    for (int e=0; e<n; e++) {int i=due[e]; file(i,slot(test(i)));}
+    tested=n;
+  }
+
+  long slot(double key) { // bucket for key: never the current one, never past the horizon
+    if (key<=K()) return cur+1;
+    return Math.min(Math.max((long)Math.floor(key/W),cur+1),cur+BUCKETS-1);
+  }
+
+  void file(int i, long k) {
+    int h=(int)(k%BUCKETS);
+    bucket[i]=h; prev[i]=-1; next[i]=head[h];
+    if (head[h]>=0) prev[head[h]]=i;
+    head[h]=i;
+    size++;
+  }
+
+  void unfile(int i) {
+    if (prev[i]>=0) next[prev[i]]=next[i]; else head[bucket[i]]=next[i];
+    if (next[i]>=0) prev[next[i]]=prev[i];
+    size--;
+  }
+
+  double test(int i) { // sweeps ball i against the player over the last step, returns its new key
+    BallStore b=w.balls;
+    Spring s=w.springs[0];
+    float R=2*b.r[i];
+    float d0x=b.px[i]-s.prevxpos, d0y=b.py[i]-s.prevypos;      // relative position at the start of the step
+    float d1x=b.x[i]-s.tempxpos, d1y=b.y[i]-s.tempypos;        // and at its end
+    float ddx=d1x-d0x, ddy=d1y-d0y;
+    float c0=d0x*d0x+d0y*d0y-R*R, qa=ddx*ddx+ddy*ddy, qb=d0x*ddx+d0y*ddy;
+    boolean touched = c0<0;                                    // already touching at the start
+    if (!touched && qa>0 && qb<0) {                            // approaching: first root of qa*u*u+2*qb*u+c0 in [0,1]
+      float disc=qb*qb-qa*c0;
+      touched = disc>=0 && (-qb-(float)Math.sqrt(disc))<=qa;
+    }
+    float d1=(float)Math.sqrt(d1x*d1x+d1y*d1y);
+    if (touched && !b.collide[i]) {w.points++; b.collide[i]=true;} // contact begins
+    if (d1<R) {b.color(i,World.black); return Double.NEGATIVE_INFINITY;}  // still touching, test again next step
+    b.collide[i]=false;
+    b.color(i,World.magenta);
+    return d1-R+K();
+  }
+}
@@ -0,0 +1,29 @@
+// Fixed-timestep accumulator driven by real elapsed time: the display asks how many physics
+// steps of dt are due since its last frame and how far it is between the last two steps,
+// so the physics rate stays fixed whatever the frame rate.
+
+class FixedStepClock {
+  double dt;            // physics step in seconds
+  double acc=0;         // real time not yet simulated
+  long last=-1;         // nanoTime of the previous advance
+  int maxSteps=8;       // steps allowed per frame, time beyond that is dropped so a stall cannot snowball
+
+  FixedStepClock(float hz) {dt=1.0/hz;}
+
+  int advance(long now) { // returns the number of steps to run for the real time elapsed up to now (nanoseconds)
+    if (last<0) last=now;
+    acc+=(now-last)*1e-9;
+    last=now;
+    int n=(int)(acc/dt);
+    if (n>maxSteps) {n=maxSteps; acc=0;} else acc-=n*dt;
+    return n;
+  }
+
+  long stepTime(int k) { // nanoTime simulated up to by the k-th last of the steps due at the last advance, k=0 for the last one
+    return last-(long)((acc+k*dt)*1e9);
+  }
+
+  float alpha() {return (float)(acc/dt);} // fraction of a step between the last step and now, to interpolate rendering
+
+  void reset() {acc=0; last=-1;}
+}
@@ -0,0 +1,70 @@
+// Keeps the frame rate steady by trading detail for time: frame() is given the work time of every
+// frame, and once per window compares its slow frames with the budget of the current rate. When
+// they overrun it the governor steps down one level of detail, or first back to the base rate if
+// it had raised it; when they leave ample headroom it steps back up, and past full detail it may
+// raise the rate up to maxHz. A step up that is undone in the next window waits twice as long
+// before it is tried again, so a machine on the edge of a level does not flicker between two.
+// Levels that would not pay off in the current drawing mode are skipped both ways.
+
+class Governor {
+  static final int FULL=0, NO_SMOOTH=1, COARSE=2, PLAIN=3, LEVELS=4;  // each level also drops what the ones before it drop
+  static final String[] NAMES={"full detail", "no smoothing", "coarse disks", "plain background"};
+  static final float STEP=1.25f;   // ratio between successive frame rates
+
+  float baseHz, maxHz, hz;        // frame rate asked for, highest one allowed, current one
+  int level=FULL;
+  boolean[] skipped=new boolean[LEVELS];  // levels stepped over, FULL is never skipped
+  boolean raiseRate=false;        // goes past baseHz when there is headroom at full detail
+  float high=.9f, low=.5f;        // fractions of the budget: above high steps down, below low steps up
+  float q=.9f;                    // quantile of the window compared with them, so a lone hiccup does not count
+  long[] work, scratch;           // nanoseconds per frame in the current window
+  int count=0;
+  int wait=0, backoff=1;          // windows to wait before the next step up, and after a step up that failed
+  boolean justUp=false;           // the last change was a step up and has not held a window yet
+
+  Governor(float pbaseHz, float pmaxHz, int window) {
+    baseHz=hz=pbaseHz; maxHz=Math.max(pbaseHz,pmaxHz);
+    work=new long[window]; scratch=new long[window];
+  }
+
+  boolean frame(long nanos) { // files the work time of a frame, returns true if the level or the rate changed
+    work[count++]=nanos;
+    if (count<work.length) return false;
+    count=0;
+    System.arraycopy(work,0,scratch,0,work.length);
+    java.util.Arrays.sort(scratch);
+    long w=scratch[Math.min(work.length-1,(int)(q*work.length))];
+    float budget=1e9f/hz;
+    if (w>high*budget) {
+      if (hz>baseHz) hz=Math.max(baseHz,hz/STEP);
+      else if (below(level)<LEVELS) level=below(level);
+      else return false;                             // nothing left to drop
+      if (justUp) backoff=Math.min(2*backoff,64);
+      justUp=false; wait=backoff;
+      return true;
+    }
+    justUp=false;
+    if (w>=low*budget) return false;
+    if (wait>0) {wait--; return false;}
+    if (level>FULL) level=above(level);
+    else if (raiseRate && hz<maxHz && w<low*1e9f/Math.min(maxHz,hz*STEP)) hz=Math.min(maxHz,hz*STEP);
+    else return false;
+    justUp=true; wait=backoff;
+    return true;
+  }
+
+  int below(int l) {do l++; while (l<LEVELS && skipped[l]); return l;}  // next level down, LEVELS if none
+  int above(int l) {do l--; while (l>FULL && skipped[l]); return l;}
+
+  boolean skip(int l, boolean on) { // skips level l or stops skipping it, returns true if that moved the current level
+    if (l==FULL) return false;
+    skipped[l]=on;
+    if (!on || level!=l) return false;
+    level = below(l)<LEVELS ? below(l) : above(l);  // the next level down saves at least as much, failing that the next one up saves less
+    return true;
+  }
+
+  void reset() {level=FULL; hz=baseHz; count=0; wait=0; backoff=1; justUp=false;}
+
+  String describe() {return NAMES[level]+" at "+Math.round(hz)+" fps";}
+}
@@ -0,0 +1,34 @@
+// Uniform grid broad phase over a BallStore, rebuilt every step with a counting sort.
+// Balls are bucketed by the cell holding their center; cells are at least one ball diameter
+// wide, so any two touching balls sit in the same or in neighbouring cells.
+// Balls outside the field are clamped into the border cells.
+
+class Grid {
+  float cell;          // cell side
+  int cols, rows;      
+  int[] start;         // balls of cell k are items[start[k]..start[k+1]-1]
+  int[] items;         // ball slots sorted by cell
+  int[] cellOf;        // cell of each ball slot
+
+  Grid(float width, float height, float cellSize) {
+    cell=cellSize;
+    cols=Math.max(1,(int)Math.ceil(width/cell)); 
+    rows=Math.max(1,(int)Math.ceil(height/cell));
+    start=new int[cols*rows+1];
+    items=new int[0]; cellOf=new int[0];
+  }
+
+  int col(float x) {int i=(int)(x/cell); return i<0 ? 0 : i>=cols ? cols-1 : i;}
+  int row(float y) {int j=(int)(y/cell); return j<0 ? 0 : j>=rows ? rows-1 : j;}
+
+  void build(BallStore b) {
+    int n=b.n;
+    if (items.length<b.capacity()) {items=new int[b.capacity()]; cellOf=new int[b.capacity()];}
+    java.util.Arrays.fill(start,0);
+    for (int i=0; i<n; i++) {int k=row(b.y[i])*cols+col(b.x[i]); cellOf[i]=k; start[k+1]++;}
+    for (int k=0; k<cols*rows; k++) start[k+1]+=start[k];
+    for (int i=0; i<n; i++) items[start[cellOf[i]]++]=i; // start[k] now holds the end of cell k
+    for (int k=cols*rows; k>0; k--) start[k]=start[k-1];
+    start[0]=0;
+  }
+}
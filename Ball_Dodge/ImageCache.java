@@ -0,0 +1,91 @@
+// Decoded images kept on disk so that later starts skip decoding: the pixels of a picture scaled
+// to w x h are stored raw in a file named after the SHA-1 of the picture's bytes, so an edited
+// picture gets a new entry and a stale one is never read. Entries are written to a temporary
+// file and renamed, so a start that is killed halfway leaves no broken entry. Layout (big endian):
+//   int magic 'BDIC', short version, int width, int height, then width*height ARGB ints.
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+class ImageCache {
+  static final int MAGIC=0x42444943, VERSION=1;  // "BDIC"
+  static final int HEADER=14;
+
+  File dir;
+
+  ImageCache(File pdir) {dir=pdir;}
+
+  int[] load(File source, int w, int h) throws IOException { // ARGB pixels of source scaled to w x h
+    byte[] bytes=read(source);
+    String name=source.getName();
+    File entry=new File(dir,name+"-"+hash(bytes)+"-"+w+"x"+h+".bin");
+    if (entry.exists()) {
+      int[] p=readEntry(entry,w,h);
+      if (p!=null) return p;
+    }
+    BufferedImage img=javax.imageio.ImageIO.read(new ByteArrayInputStream(bytes));
+    if (img==null) throw new IOException(source+" is not an image");
+    BufferedImage scaled=new BufferedImage(w,h,BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g=scaled.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(img,0,0,w,h,null);
+    g.dispose();
+    int[] p=scaled.getRGB(0,0,w,h,null,0,w);
+    try {
+      if (writeEntry(entry,p,w,h)) 
+        for (File o : dir.listFiles()) // entries of older versions of the picture
+          if (!o.equals(entry) && o.getName().startsWith(name+"-") && o.getName().endsWith("-"+w+"x"+h+".bin")) o.delete();
+    } catch (IOException e) {}  // a read-only disk only costs the next start a decode
+    return p;
+  }
+
+  static byte[] read(File f) throws IOException {
+    DataInputStream in=new DataInputStream(new FileInputStream(f));
+    try {
+      byte[] b=new byte[(int)f.length()];
+      in.readFully(b);
+      return b;
+    } finally {in.close();}
+  }
+
+  static String hash(byte[] bytes) {
+    try {
+      StringBuilder s=new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) s.append(Integer.toHexString((b&0xFF)|0x100).substring(1));
+      return s.toString();
+    } catch (java.security.NoSuchAlgorithmException e) {throw new RuntimeException(e);}  // every JVM has SHA-1
+  }
+
+  static int[] readEntry(File f, int w, int h) throws IOException { // null if f is not a complete entry of that size
+    if (f.length()!=HEADER+4L*w*h) return null;
+    FileChannel in=new FileInputStream(f).getChannel();
+    try {
+      ByteBuffer b=ByteBuffer.allocate((int)f.length());
+      while (b.hasRemaining() && in.read(b)>=0) {}
+      b.flip();
+      if (b.getInt()!=MAGIC || b.getShort()!=VERSION || b.getInt()!=w || b.getInt()!=h) return null;
+      int[] p=new int[w*h];
+      b.asIntBuffer().get(p);
+      return p;
+    } finally {in.close();}
+  }
+
+  boolean writeEntry(File f, int[] p, int w, int h) throws IOException { // false if another start wrote it first
+    dir.mkdirs();
+    File tmp=File.createTempFile("entry",".tmp",dir);
+    ByteBuffer b=ByteBuffer.allocate(HEADER+4*p.length);
+    b.putInt(MAGIC).putShort((short)VERSION).putInt(w).putInt(h);
+    b.asIntBuffer().put(p);
+    b.clear();
+    FileChannel out=new FileOutputStream(tmp).getChannel();
+    try {while (b.hasRemaining()) out.write(b);} finally {out.close();}
+    if (tmp.renameTo(f)) return true;
+    tmp.delete();
+    return false;
+  }
+}
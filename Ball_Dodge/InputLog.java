@@ -0,0 +1,113 @@
+// Per-step player input of one session, kept compact so thousands of sessions can be stored
+// and replayed. File layout (big endian):
+//   int magic 'BDIN', short version, float width, float height, float hz, int balls, byte flags,
+//   UTF wave patterns (version 2, empty for the classic relaunching balls),
+//   int steps, then per step the zigzag varint deltas of mouse x and y,
+//   and of its velocity x and y in pixels per second (version 3),
+//   then long checksum and int points of the world after the last step.
+// The session always starts from a freshly built World with the header's settings.
+
+import java.io.*;
+
+class InputLog {
+  static final int MAGIC=0x4244494E, VERSION=3;  // "BDIN"
+  static final int BOUNCE=1, TRAJECTORIES=2, CONTINUOUS=4, BODY=8;  // flags
+
+  int version=VERSION;
+  float width, height, hz;
+  int balls;
+  int flags;
+  String waves="";             // patterns of the spawner, empty if none
+  int steps=0;
+  byte[] data=new byte[4096];  // encoded input deltas
+  int size=0;                  // bytes used in data
+  int lastx, lasty, lastvx, lastvy;  // previous step's input, deltas are taken from it
+  long checksum;               // of the world after the last step
+  int points;
+
+  InputLog(World w) { // starts a log for w, which must be freshly built
+    width=w.width; height=w.height; hz=w.hz; balls=w.balls.n;
+    if (w.waves!=null) waves=w.waves.source;
+    flags=(w.ballCollisions ? BOUNCE : 0) | (w.trajectories ? TRAJECTORIES : 0) | (w.continuous ? CONTINUOUS : 0) | (w.body!=null ? BODY : 0);
+  }
+
+  InputLog() {}
+
+  World newWorld() { // the world this session starts from
+    World w=new World(width,height,hz);
+    w.balls.clear(); w.makeBalls(balls);
+    if (waves.length()>0) w.setWaves(new Waves(waves));
+    w.ballCollisions=(flags&BOUNCE)!=0;
+    w.setTrajectories((flags&TRAJECTORIES)!=0);
+    w.setContinuous((flags&CONTINUOUS)!=0);
+    if ((flags&BODY)!=0) w.setBody(SoftBody.NODES);
+    return w;
+  }
+
+  void record(int mx, int my, int mvx, int mvy) { // logs the input of the next step
+    if (size+20>data.length) data=java.util.Arrays.copyOf(data,2*data.length);
+    put(mx-lastx); put(my-lasty); put(mvx-lastvx); put(mvy-lastvy);
+    lastx=mx; lasty=my; lastvx=mvx; lastvy=mvy;
+    steps++;
+  }
+
+  void finish(World w) {checksum=w.checksum(); points=w.points;} // seals the log with the state reached
+
+  void put(int v) {
+    int z=(v<<1)^(v>>31);
+    while ((z&~0x7F)!=0) {data[size++]=(byte)((z&0x7F)|0x80); z>>>=7;}
+    data[size++]=(byte)z;
+  }
+
+  // Replays the log into w at full speed; returns true if the final state matches the recorded checksum
+  boolean replay(World w) {
+    int x=0, y=0, vx=0, vy=0;
+    at=0;
+    for (int s=0; s<steps; s++) {
+      x+=get(); y+=get();
+      if (version>=3) {vx+=get(); vy+=get();}  // older logs had no velocity
+      w.step(x,y,vx,vy);
+    }
+    return w.checksum()==checksum && w.points==points;
+  }
+
+  int at;  // read position in data during replay
+
+  int get() {
+    int z=0, shift=0, b;
+    do {b=data[at++]; z|=(b&0x7F)<<shift; shift+=7;} while ((b&0x80)!=0);
+    return (z>>>1)^-(z&1);
+  }
+
+  void save(String path) throws IOException {
+    File file=new File(path);
+    if (file.getParentFile()!=null) file.getParentFile().mkdirs();
+    DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC); out.writeShort(version);
+      out.writeFloat(width); out.writeFloat(height); out.writeFloat(hz);
+      out.writeInt(balls); out.writeByte(flags);
+      out.writeUTF(waves);
+      out.writeInt(steps); out.writeInt(size); out.write(data,0,size);
+      out.writeLong(checksum); out.writeInt(points);
+    } finally {out.close();}
+  }
+
+  static InputLog load(String path) throws IOException {
+    DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+    try {
+      if (in.readInt()!=MAGIC) throw new IOException(path+" is not an input log");
+      int version=in.readShort();
+      if (version<1 || version>VERSION) throw new IOException(path+" has unsupported version "+version);
+      InputLog log=new InputLog();
+      log.version=version;
+      log.width=in.readFloat(); log.height=in.readFloat(); log.hz=in.readFloat();
+      log.balls=in.readInt(); log.flags=in.readByte();
+      if (version>=2) log.waves=in.readUTF();
+      log.steps=in.readInt(); log.size=in.readInt();
+      log.data=new byte[log.size]; in.readFully(log.data);
+      log.checksum=in.readLong(); log.points=in.readInt();
+      return log;
+    } finally {in.close();}
+  }
+}
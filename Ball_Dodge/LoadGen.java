@@ -0,0 +1,106 @@
+// Simulated players for SessionServer, all driven by one selector thread. Clients connect at
+// ramp per second up to clients, each sends its pointer once per tick (circling like
+// World.main, from its own phase) and counts the states it receives. Every second it prints how
+// many clients are connected and refused and the state rate they get; the last line reports
+// the most sessions that all still got 90% of their ticks.
+//   java LoadGen [clients=2000] [seconds=20] [ramp=200] [host=127.0.0.1] [port=7777]
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+
+class LoadGen {
+  static class Client {
+    SocketChannel channel;
+    ByteBuffer in=ByteBuffer.allocate(1<<16);
+    ByteBuffer out=ByteBuffer.allocate(64);
+    float phase;
+    boolean welcomed=false;
+    int states=0;   // received in the current second
+    int seconds=0;  // full seconds connected
+  }
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length>0 ? Integer.parseInt(args[0]) : 2000;
+    float seconds = args.length>1 ? Float.parseFloat(args[1]) : 20;
+    float ramp = args.length>2 ? Float.parseFloat(args[2]) : 200;
+    InetSocketAddress server=new InetSocketAddress(args.length>3 ? args[3] : "127.0.0.1", args.length>4 ? Integer.parseInt(args[4]) : 7777);
+
+    Selector selector=Selector.open();
+    List<Client> live=new ArrayList<Client>();
+    int opened=0, refused=0, lost=0, sustained=0;
+    float hz=30;
+    long t0=System.nanoTime(), end=t0+(long)(seconds*1e9), nextTick=t0, nextReport=t0+1000000000L;
+    int tick=0;
+    while (System.nanoTime()<end) {
+      long now=System.nanoTime();
+      for (; opened<clients && opened<ramp*(now-t0)*1e-9; opened++) { // connects on schedule
+        Client c=new Client();
+        c.channel=SocketChannel.open(server);
+        c.channel.configureBlocking(false);
+        c.channel.socket().setTcpNoDelay(true);
+        c.channel.register(selector,SelectionKey.OP_READ,c);
+        c.phase=(float)(2*Math.PI*opened/clients);
+        live.add(c);
+      }
+      if (now>=nextTick) { // every client sends its pointer
+        float a=tick*0.05f;
+        for (Client c : live) {
+          if (!c.welcomed || c.out.hasRemaining()) continue;  // still sending the previous one
+          c.out.clear();
+          c.out.putShort((short)9).put(SessionServer.INPUT).putFloat(300+200*(float)Math.cos(a+c.phase)).putFloat(300+200*(float)Math.sin(a+c.phase));
+          c.out.flip();
+          try {c.channel.write(c.out);} catch (IOException e) {c.out.clear().flip();}
+        }
+        tick++;
+        nextTick+=(long)(1e9/hz);
+      }
+      if (now>=nextReport) {
+        int getting=0, min=Integer.MAX_VALUE;
+        long sum=0;
+        int welcomed=0;
+        for (Client c : live) if (c.welcomed) {
+          if (c.seconds++>0) { // joined before this second, so it should have got all its ticks
+            welcomed++; sum+=c.states; min=Math.min(min,c.states);
+            if (c.states>=.9f*hz) getting++;
+          }
+          c.states=0;
+        }
+        if (welcomed>0 && getting==welcomed) sustained=Math.max(sustained,welcomed);
+        System.out.println(String.format("%5.0f s %6d sessions %5d refused %4d lost  states/s mean %5.1f min %3d  %d under 90%%",
+          (now-t0)*1e-9, welcomed, refused, lost, welcomed>0 ? (double)sum/welcomed : 0.0, welcomed>0 ? min : 0, welcomed-getting));
+        nextReport+=1000000000L;
+      }
+      selector.select(Math.max(1,(Math.min(nextTick,nextReport)-System.nanoTime())/1000000));
+      for (Iterator<SelectionKey> it=selector.selectedKeys().iterator(); it.hasNext();) {
+        SelectionKey k=it.next();
+        it.remove();
+        Client c=(Client)k.attachment();
+        int r;
+        try {r=c.channel.read(c.in);} catch (IOException e) {r=-1;}
+        ByteBuffer in=c.in;
+        in.flip();
+        while (in.remaining()>=2) {
+          int len=in.getShort(in.position())&0xFFFF;
+          if (in.remaining()<2+len) break;
+          in.getShort();
+          int next=in.position()+len;
+          byte type=in.get();
+          if (type==SessionServer.WELCOME) {c.welcomed=true; in.getInt(); hz=in.getFloat();}
+          if (type==SessionServer.STATE) c.states++;
+          if (type==SessionServer.REJECT) {refused++; r=-2;}
+          in.position(next);
+        }
+        in.compact();
+        if (r<0) {
+          if (r==-1 && c.welcomed) lost++;
+          k.cancel(); c.channel.close(); live.remove(c);
+        }
+      }
+    }
+    System.out.println(opened+" clients opened, "+refused+" refused, "+lost+" lost; "+sustained+" sessions sustained at "+hz+" Hz");
+    for (Client c : live) c.channel.close();
+  }
+}
@@ -1,125 +1,233 @@
 pt A, B, C, X, L, R; // points edted by user and also left and right corners of screen
 color red=#FF0000, magenta=#FF79FD, blue=#79BBFF, green=#79FF7A, orange=#FFBC79, black= #000000;// colors
 int pctr=0; // counts pictures taken
-int points=0; // tracks how many time your face was slapped by a flying ball
-PImage pic; // picture of author's face that is displayed in the help pane, read from file pic.jpg in data folder
-
-Spring[] springs = new Spring[1]; 
+PImage pic; // picture of author's face that is displayed in the help pane, read from file pic.jpg in data folder by loadAssets()
+
+World world; // balls, player spring and hit counter, stepped headless and only rendered here
+float physicsHz=120, displayHz=60; // fixed physics rate and target display rate, independent of each other
+FixedStepClock clock; // decides how many physics steps each frame runs
+Profiler prof = new Profiler(256); // per-phase frame timings over the last 256 frames
+boolean showProfile=false; // draws the timings over the game
+Recorder recorder = new Recorder(8,"tif"); // writes captured frames on a background thread
+InputLog inputLog; // input of the session being logged for replay, null when not logging
+PointerRing pointer = new PointerRing(256); // every mouse motion with its arrival time, filled on the event thread
+SnapshotRing history; // the last seconds of the game, at most one snapshot per frame, for rewinding
+float rewindSeconds=5; // how far back the game can be rewound
+long historyBytes=32<<20; // memory the snapshots may take, fewer are kept when the balls are many
+StreamServer stream; // spectators watching this game over the network, null when not streaming
+StreamClient watching; // the streamed game shown instead of this one, null when playing
+World played; // this game, put aside while watching another
 
 void setup()
 {
   size(600,600);
 
-  PFont font = loadFont("AppleCasual-36.vlw"); 
-  textFont(font, 36);      // load font for writing on the canvas
-  pic = loadImage("data/pic.jpg");                                  // load image names pic from file pic.jpg in folder data
-  C=P(pic.width/2,pic.height/2); 
-  B=P(pic.width/2,pic.height*0.9); 
+  loadAssets();  // the font and pic.jpg arrive on background threads, the game starts on a placeholder
   A=P(width/2,height/2);  // set up initial values for all 3 points 
   X=A; // picked point is A
   L=P(0,height); 
   R=P(width,height); // left and right corner starting positions for balls
-  makeBalls(); // declares all balls
-  frameRate(30); // slows down to 30 frames per second when possible
+  world = new World(width,height,physicsHz); // declares all balls and the player spring
+  world.prof = prof;
+  world.setWaves(loadWaves());  // balls come from the spawn patterns
+  clock = new FixedStepClock(physicsHz);
+  history = new SnapshotRing(historyBytes,round(rewindSeconds*physicsHz),world);
+  addMouseMotionListener(new java.awt.event.MouseMotionAdapter() { // samples the mouse as events arrive rather than once per frame
+    public void mouseMoved(MouseEvent e) {pointer.add(System.nanoTime(),e.getX(),e.getY());}
+    public void mouseDragged(MouseEvent e) {pointer.add(System.nanoTime(),e.getX(),e.getY());}
+  });
+  governor = new Governor(displayHz,physicsHz,30); // judges the frame times every 30 frames
+  fitLevels();
+  frameRate(displayHz); // slows down to displayHz frames per second when possible, the governor may change it
 
   noStroke(); 
   smooth();
-  springs[0] = new Spring(300, 300, 50, 0.95, 40, 0.1, springs, 0, false);
 }
 
 void draw() 
 {  
-  background(pic); 
-  springs[0].update(); 
-  springs[0].display();  
-
-
-  moveBalls();  // updates the position and velocity of balls
-  processCollisions();  // detects collisions, processes them, and keeps track of ho wmany times the player's face was hit: make it react to the hit
+  long start=System.nanoTime();
+  prof.begin();
+  installAssets();
+  int steps = watching!=null ? 0 : clock.advance(System.nanoTime()); // a watched game is stepped by its host
+  for (int k=steps-1; k>=0; k--) { // updates the spring, the balls and the hit count, each step with the mouse at its own time
+    int mx=mouseX, my=mouseY, mvx=0, mvy=0;
+    if (pointer.sample(clock.stepTime(k))) {mx=round(pointer.px); my=round(pointer.py); mvx=round(pointer.vx); mvy=round(pointer.vy);}
+    if (inputLog!=null) inputLog.record(mx,my,mvx,mvy);
+    world.step(mx,my,mvx,mvy); 
+  }
+  if (steps>0) history.push(world); 
+  prof.mark(Profiler.HISTORY);
+  if (steps>0 && stream!=null) stream.publish(world);
+  if (watching!=null) watch();
+  prof.mark(Profiler.STREAM);
+  float a = watching!=null ? 1 : clock.alpha(); // draws between the last two physics steps, or the last state received
+  if (hud!=null && hud.update(world.points)) changed.add(0,0,hud.w,hud.h); // the score changed, so the text area is redrawn
+  boolean full=!restoreDirty(a); // restores only the regions that change, unless everything must be redrawn
+  if (full) showBackground(); 
+  prof.mark(Profiler.BACKGROUND);
+  showSpring(world.springs[0],a);  
+  prof.mark(Profiler.SHOW_SPRING);
   noFill(); 
   noStroke();
-  showBalls(); 
-  fill(red); 
-  text(Format0(points,3)+" hits",20,40); // prints game status: change this as desired
-  String name="Hannah Yu";  
-  fill(0);
-  text(name, 420, 40);
-  String dog_name="(and Rylai)";  
-  fill(0);
-  text(dog_name, 420, 80);
+  showBalls(a); 
+  prof.mark(Profiler.SHOW_BALLS);
+  if (hud!=null) hud.show(full); // score and names, once the font is there
+  prof.mark(Profiler.TEXT);
+  prof.endFrame();
+  if (showProfile) showProfile();
+  if (recorder.recording) captureFrame(false);
+  govern(System.nanoTime()-start);
 }
 
 void keyPressed() {
-  if (key=='x')  saveFrame("data/images/p"+Format0(pctr++,4)+".tif");
-}  // saves current screen as image (use for your report/web page)
-
-class Spring 
-{ 
-  // Screen values 
-  float xpos, ypos;
-  float tempxpos, tempypos; 
-  int size = 20; 
-  boolean move = false; 
-  boolean collide = false;
-
-  // Spring simulation constants 
-  float mass;       // Mass 
-  float k = 0.2;    // Spring constant 
-  float damp;       // Damping 
-  float rest_posx;  // Rest position X 
-  float rest_posy;  // Rest position Y 
-
-  // Spring simulation variables 
-  //float pos = 20.0; // Position 
-  float velx = 0.0;   // X Velocity 
-  float vely = 0.0;   // Y Velocity 
-  float accel = 0;    // Acceleration 
-  float force = 0;    // Force 
-
-  Spring[] friends;
-  int me;
-
-  // Constructor
-  Spring(float x, float y, int s, float d, float m, 
-  float k_in, Spring[] others, int id, boolean collz) 
-  { 
-    xpos = tempxpos = x; 
-    ypos = tempypos = y;
-    rest_posx = mouseX;
-    rest_posy = mouseY;
-    size = s;
-    damp = d; 
-    mass = m; 
-    k = k_in;
-    friends = others;
-    me = id;
-    collide = collz;
-  } 
-
-  void update() 
-  { 
-    rest_posy = mouseY; 
-    rest_posx = mouseX;
-
-
-    force = -k * (tempypos - rest_posy);  // f=-ky 
-    accel = force / mass;                 // Set the acceleration, f=ma == a=f/m 
-    vely = damp * (vely + accel);         // Set the velocity 
-    tempypos = tempypos + vely;           // Updated position 
-
-    force = -k * (tempxpos - rest_posx);  // f=-ky 
-    accel = force / mass;                 // Set the acceleration, f=ma == a=f/m 
-    velx = damp * (velx + accel);         // Set the velocity 
-    tempxpos = tempxpos + velx;           // Updated position
-  } 
-
-  void display() 
-  { 
-    fill(green); 
-    ellipse(tempxpos, tempypos, size, size);
+  if (key=='x')  captureFrame(true);                                    // saves current screen as image (use for your report/web page)
+  if (key=='r')  toggleRecording();                                     // starts or stops saving every frame
+  if (key=='l')  toggleInputLog();                                      // restarts the game logging its input, or saves the log to data/sessions
+  if (key=='b' && !modesLocked()) world.ballCollisions=!world.ballCollisions; // toggles balls bouncing off each other
+  if (key=='t' && !modesLocked()) world.setTrajectories(!world.trajectories); // toggles evaluating balls on their parabola and integrating them
+  if (key=='c' && !modesLocked()) world.setContinuous(!world.continuous); // toggles sweeping balls and player for exact hits
+  if (key=='a')  toggleBody();                                          // toggles the soft-body avatar and the plain disk
+  if (key=='m')  toggleParallel();                                      // toggles stepping large ball counts on all cores
+  if (key=='e')  {batchedBalls=!batchedBalls; fitLevels();}             // toggles cached ball sprites and per-ball ellipses
+  if (key=='p')  showProfile=!showProfile;                              // toggles the per-phase timings overlay
+  if (key=='d')  dirtyRendering=!dirtyRendering;                        // toggles restoring only changed regions and full redraws
+  if (key=='o')  toggleProfileCsv();                                    // starts or stops exporting per-frame timings to data/profile.csv
+  if (key=='z')  rewind(1);                                             // takes the game back one second
+  if (key=='k')  saveCheckpoint();                                      // saves the game to data/checkpoint.bin
+  if (key=='K')  loadCheckpoint();                                      // puts the game back as it was saved
+  if (key=='h')  toggleStream();                                        // starts or stops streaming the game to spectators
+  if (key=='j')  toggleWatching();                                      // watches the game streamed on this machine, or comes back to this one
+  if (key=='g')  toggleGoverning();                                     // toggles lowering the detail when frames run late, back to full detail
+  if (key=='G')  governor.raiseRate=!governor.raiseRate;                // toggles raising the frame rate when there is time to spare
+  fullRedraw=true;  // overlays or drawing modes may have changed
+}
+
+void toggleParallel() {
+  if (world.parallel==null) world.parallel=new ParallelStepper(world,Runtime.getRuntime().availableProcessors());
+  else {world.parallel.shutdown(); world.parallel=null;}
+}
+
+boolean modesLocked() { // the log stores the modes and the avatar once, in its header, and only input after it
+  if (inputLog==null) return false;
+  println("cannot change the game while logging input, the log could not replay it");
+  return true;
+}
+
+void toggleBody() {
+  if (watching!=null) return;
+  if (modesLocked()) return;
+  world.setBody(world.body==null ? SoftBody.NODES : 0);
+}
+
+void showProfile() { // per-phase p50, p99 and max in milliseconds over the last frames
+  if (hud==null) return;  // no font yet
+  fill(0,160); 
+  rect(10,height-46-16*Profiler.PHASES,330,40+16*Profiler.PHASES);
+  textSize(14);
+  fill(255);
+  text((governing ? "governor: " : "governor off: ")+governor.describe(),20,height-36-16*Profiler.PHASES);
+  text("phase          p50     p99     max  (ms)",20,height-20-16*Profiler.PHASES);
+  for (int p=0; p<Profiler.PHASES; p++) {
+    float y=height-20-16*(Profiler.PHASES-1-p);
+    text(Profiler.NAMES[p],20,y);
+    text(nf(prof.percentile(p,.5)/1e6,1,2),140,y);
+    text(nf(prof.percentile(p,.99)/1e6,1,2),200,y);
+    text(nf(prof.max(p)/1e6,1,2),260,y);
   }
-} 
+  textSize(36);
+}
+
+void toggleProfileCsv() {
+  if (prof.csv!=null) {prof.stopCsv(); return;}
+  try {prof.startCsv(sketchPath("data/profile.csv"));} catch (IOException e) {println("cannot write profile: "+e);}
+}
 
+void captureFrame(boolean block) { // queues the screen for writing to data/images, dropping it if the writer is behind unless block
+  loadPixels();
+  recorder.capture(pixels,width,height,sketchPath("data/images/p"+Format0(pctr++,4)+"."+recorder.format),block);
+}
+
+void toggleRecording() {
+  recorder.recording=!recorder.recording;
+  if (!recorder.recording) println("recording: "+recorder.stats());
+}
+
+void rewind(float seconds) {
+  if (watching!=null) return;  // the watched game is not ours to change
+  if (modesLocked()) return;
+  history.rewind(world,world.frames-round(seconds*world.hz)); // in steps of the game, however many each frame took
+}
+
+void saveCheckpoint() {
+  Snapshot s = new Snapshot(Snapshot.size(world));
+  s.take(world);
+  try {s.save(sketchPath("data/checkpoint.bin")); println("checkpoint saved");} catch (IOException e) {println("cannot save checkpoint: "+e);}
+}
+
+void loadCheckpoint() {
+  if (watching!=null) return;
+  if (modesLocked()) return;
+  try {Snapshot.load(sketchPath("data/checkpoint.bin")).restore(world); history.clear();} 
+  catch (IOException e) {println("cannot load checkpoint: "+e);}
+  catch (IllegalArgumentException e) {println("cannot restore checkpoint: "+e.getMessage());}
+}
+
+void toggleStream() {
+  if (stream!=null) {stream.close(); stream=null; println("streaming stopped"); return;}
+  try {stream = new StreamServer(StreamServer.PORT,world); println("streaming on port "+StreamServer.PORT);} 
+  catch (IOException e) {println("cannot stream: "+e);}
+}
+
+void toggleWatching() {
+  if (watching!=null) {watching.close(); watching=null; world=played; clock.reset(); return;}
+  if (stream!=null || inputLog!=null) {println("cannot watch while streaming or logging this game"); return;}
+  try {watching = new StreamClient("127.0.0.1",StreamServer.PORT); played=world; world=watching.world;} 
+  catch (IOException e) {println("cannot watch: "+e);}
+}
+
+void watch() { // shows what arrived from the watched game
+  try {watching.poll();} catch (IOException e) {println("stream ended: "+e.getMessage()); toggleWatching();}
+}
+
+void toggleInputLog() { // a logged session starts from a fresh world so that it can be replayed from the log alone
+  if (watching!=null) return;
+  if (inputLog==null) {
+    World w = new World(width,height,physicsHz);
+    w.ballCollisions = world.ballCollisions;
+    if (world.waves!=null) w.setWaves(new Waves(world.waves.source));
+    w.setTrajectories(world.trajectories);
+    w.setContinuous(world.continuous);
+    if (world.body!=null) w.setBody(world.body.n);
+    w.parallel = world.parallel; w.prof = prof;
+    if (w.parallel!=null) w.parallel.w = w;
+    world = w;
+    history.alloc(world);
+    inputLog = new InputLog(world);
+    return;
+  }
+  inputLog.finish(world);
+  String path = sketchPath("data/sessions/s"+System.currentTimeMillis()+".bin");
+  try {inputLog.save(path); println("input log saved to "+path);} catch (IOException e) {println("cannot save input log: "+e);}
+  inputLog = null;
+}
+
+Waves loadWaves() { // spawn patterns from data/waves.txt, or the classic ones if it cannot be read
+  try {return Waves.load(sketchPath("data/waves.txt"));}
+  catch (Exception e) {println("using default waves: "+e); return new Waves(Waves.DEFAULT);}
+}
+
+void showSpring(Spring s, float a) { // draws the player a step fraction past its previous position
+  fill(green); 
+  if (world.body!=null) {showBody(world.body,a); return;}
+  show(lerp(s.prevxpos,s.tempxpos,a), lerp(s.prevypos,s.tempypos,a), s.size/2);
+}
+
+void showBody(SoftBody b, float a) { // draws the hull of the soft body a step fraction past its previous position
+  beginShape();
+  for (int i=0; i<b.n; i++) vertex(lerp(b.px[i],b.x[i],a), lerp(b.py[i],b.y[i],a));
+  endShape(CLOSE);
+}
 
 String  Format0(int v, int n) {
   String s=str(v); 
@@ -0,0 +1,63 @@
+// Persistent worker pool that splits ball integration and the player collision test into one
+// contiguous chunk per core. Each ball is only written by the chunk owning it, so results are
+// bit-identical to the sequential path; hits are then counted by World in ball order.
+// Ball-ball bouncing stays sequential since its impulses depend on the pair order.
+// Large soft bodies are split the same way, by node to integrate and by constraint within a color.
+
+import java.util.concurrent.Phaser;
+
+class ParallelStepper {
+  static final int MOVE=1, TOUCH=2, INTEGRATE=3, RELAX=4;   // tasks
+
+  World w;
+  int threads;              // chunks per task, the calling thread runs chunk 0
+  Thread[] workers;
+  Phaser phaser;            // every task is two phases: start, then all chunks done
+  int lo, hi;               // range the task is split over
+  volatile int task;
+  volatile boolean running=true;
+
+  ParallelStepper(World pw, int pthreads) {
+    w=pw; threads=Math.max(1,pthreads);
+    phaser=new Phaser(threads);
+    workers=new Thread[threads-1];
+    for (int k=1; k<threads; k++) {
+      final int id=k;
+      workers[k-1]=new Thread(new Runnable() {public void run() {work(id);}}, "physics-"+k);
+      workers[k-1].setDaemon(true);
+      workers[k-1].start();
+    }
+  }
+
+  void work(int id) {
+    while (true) {
+      phaser.arriveAndAwaitAdvance();   // wait for a task
+      if (!running) return;
+      chunk(id);
+      phaser.arriveAndAwaitAdvance();   // report it done
+    }
+  }
+
+  void run(int t) {run(t,0,w.balls.n);} // runs task t over all balls and returns once every chunk is done
+
+  void run(int t, int from, int to) { // runs task t over from..to-1
+    lo=from; hi=to;
+    task=t;
+    phaser.arriveAndAwaitAdvance();
+    chunk(0);
+    phaser.arriveAndAwaitAdvance();
+  }
+
+  void chunk(int id) {
+    int n=hi-lo, from=lo+(int)((long)n*id/threads), to=lo+(int)((long)n*(id+1)/threads);
+    if (task==MOVE) w.moveBalls(from,to);
+    else if (task==TOUCH) w.touchPlayer(from,to);
+    else if (task==INTEGRATE) w.body.integrate(from,to);
+    else if (task==RELAX) w.body.relax(from,to);
+  }
+
+  void shutdown() {
+    running=false;
+    phaser.arriveAndAwaitAdvance();
+  }
+}
@@ -0,0 +1,54 @@
+// Timestamped pointer samples in a lock-free ring. The event thread adds every motion event as it
+// arrives, and the sketch asks where the pointer was at the time of each physics step and how fast
+// it moved, so motion between frames is not lost.
+// One writer and one reader. The writer never waits: it fills a slot, then publishes it by
+// advancing head. The reader only looks at the newest half of the ring, so the writer would have
+// to deliver half a ring of events during one sample() to overwrite what is being read.
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class PointerRing {
+  final long[] t;        // nanoTime each sample arrived at
+  final float[] x, y;    // pointer position of each sample
+  final int mask;        // slots-1, slots being a power of two
+  final AtomicLong head=new AtomicLong();  // samples written so far
+  long window=50000000L; // nanoseconds of history the velocity is measured over
+  float px, py;          // pointer at the time of the last sample()
+  float vx, vy;          // its velocity in pixels per second
+
+  PointerRing(int size) { // holds the last size samples, rounded up to a power of two
+    int n=Integer.highestOneBit(Math.max(2,size-1))<<1;
+    t=new long[n]; x=new float[n]; y=new float[n];
+    mask=n-1;
+  }
+
+  void add(long nanos, float sx, float sy) { // writer only: appends the pointer at (sx,sy) seen at time nanos
+    long h=head.get();
+    int s=(int)h&mask;
+    t[s]=nanos; x[s]=sx; y[s]=sy;
+    head.lazySet(h+1);  // the slot is visible before the new head
+  }
+
+  boolean sample(long nanos) { // reader only: sets px,py and vx,vy to the pointer at time nanos, false if no sample arrived yet
+    long h=head.get();
+    if (h==0) return false;
+    at(h,nanos-window);
+    float ox=px, oy=py;
+    at(h,nanos);
+    float s=1e9f/window;
+    vx=(px-ox)*s; vy=(py-oy)*s;
+    return true;
+  }
+
+  void at(long h, long nanos) { // sets px,py to the pointer at time nanos from the samples before h, interpolating between the two around it
+    long oldest=Math.max(0,h-(mask+1)/2);
+    long k=h-1;
+    while (k>oldest && t[(int)k&mask]>nanos) k--;
+    int a=(int)k&mask;
+    if (k==h-1 || t[a]>nanos) {px=x[a]; py=y[a]; return;}  // the pointer rests after its last sample, or nanos is older than the history kept
+    int b=(int)(k+1)&mask;
+    float u=(float)(nanos-t[a])/(t[b]-t[a]);
+    px=x[a]+(x[b]-x[a])*u;
+    py=y[a]+(y[b]-y[a])*u;
+  }
+}
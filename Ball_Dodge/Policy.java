@@ -0,0 +1,7 @@
+// A dodger that plays in place of the mouse: each step it moves the rest position of the
+// player's spring, given everything it can see of the world. SelfPlay runs one instance per
+// game, so an implementation may keep its own state between steps.
+
+interface Policy {
+  void move(World w, float[] to); // sets to[0],to[1] to the mouse position for the next step of w
+}
@@ -0,0 +1,67 @@
+// Low-overhead per-phase frame profiler: mark(phase) charges the time since the previous mark
+// to that phase, endFrame() files the frame into a rolling window from which p50, p99 and max
+// are read, and optionally appends the frame as a CSV row.
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+class Profiler {
+  static final int SPRING=0, MOVE=1, BOUNCE=2, COLLIDE=3, HISTORY=4, STREAM=5, BACKGROUND=6, SHOW_SPRING=7, SHOW_BALLS=8, TEXT=9, PHASES=10;
+  static final String[] NAMES={"spring", "moveBalls", "bounce", "collisions", "history", "stream", "background", "showSpring", "showBalls", "text"};
+
+  int window;            // frames kept for the statistics
+  long[][] samples;      // [phase][frame%window] nanoseconds
+  long[] current=new long[PHASES];  // nanoseconds charged to each phase in this frame
+  long[] scratch;        // sorted copy of one phase's samples
+  long frames=0;         // frames ended so far
+  long last;             // nanoTime of the previous mark
+  PrintWriter csv;       // per-frame export, null when off
+
+  Profiler(int pwindow) {
+    window=pwindow;
+    samples=new long[PHASES][window];
+    scratch=new long[window];
+  }
+
+  void begin() {last=System.nanoTime();}  // starts a frame, time before this is not charged
+
+  void mark(int phase) { // charges the time since the previous mark to phase
+    long t=System.nanoTime();
+    current[phase]+=t-last;
+    last=t;
+  }
+
+  void endFrame() {
+    int k=(int)(frames%window);
+    for (int p=0; p<PHASES; p++) {samples[p][k]=current[p]; current[p]=0;}
+    frames++;
+    if (csv!=null) {
+      csv.print(frames);
+      for (int p=0; p<PHASES; p++) {csv.print(','); csv.print(samples[p][k]);}
+      csv.println();
+    }
+  }
+
+  int count() {return (int)Math.min(frames,window);}
+
+  long percentile(int phase, float q) { // q-th quantile (0..1) of the phase over the window, in nanoseconds
+    int n=count();
+    if (n==0) return 0;
+    System.arraycopy(samples[phase],0,scratch,0,n);
+    java.util.Arrays.sort(scratch,0,n);
+    return scratch[Math.min(n-1,(int)(q*n))];
+  }
+
+  long max(int phase) {long m=0; for (int k=0; k<count(); k++) m=Math.max(m,samples[phase][k]); return m;}
+
+  void startCsv(String path) throws IOException { // starts appending one row per frame: frame, then nanoseconds per phase
+    stopCsv();
+    csv=new PrintWriter(new FileWriter(path));
+    csv.print("frame");
+    for (int p=0; p<PHASES; p++) {csv.print(','); csv.print(NAMES[p]);}
+    csv.println();
+  }
+
+  void stopCsv() {if (csv!=null) {csv.close(); csv=null;}}
+}
@@ -0,0 +1,72 @@
+// Asynchronous frame capture: the animation thread only copies the pixels into a pooled
+// buffer and queues it; a background thread encodes and writes the images.
+// Single shots wait for a free buffer (backpressure), continuous recording drops frames
+// instead of stalling the game when the writer falls behind.
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import javax.imageio.ImageIO;
+
+class Recorder {
+  class Frame {int[] pixels; int width, height; String path;}
+
+  ArrayBlockingQueue<Frame> free, pending;  // pooled buffers and frames waiting to be written
+  Thread writer;
+  String format;            // image format name given to ImageIO
+  boolean recording=false;  // captures every frame when true
+  // statistics
+  volatile long written=0, failed=0;
+  long captured=0, dropped=0, waited=0;
+  int highWater=0;          // most frames ever waiting
+
+  Recorder(int buffers, String pformat) {
+    free=new ArrayBlockingQueue<Frame>(buffers);
+    pending=new ArrayBlockingQueue<Frame>(buffers);
+    for (int k=0; k<buffers; k++) free.add(new Frame());
+    format=ImageIO.getImageWritersByFormatName(pformat).hasNext() ? pformat : "png";
+    writer=new Thread(new Runnable() {public void run() {write();}}, "frame-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  boolean capture(int[] pixels, int width, int height, String path, boolean block) { // queues a copy of the frame, returns false if it was dropped
+    Frame f=free.poll();
+    if (f==null) {
+      if (!block) {dropped++; return false;}
+      waited++;
+      try {f=free.take();} catch (InterruptedException e) {Thread.currentThread().interrupt(); return false;}
+    }
+    if (f.pixels==null || f.pixels.length<width*height) f.pixels=new int[width*height];
+    System.arraycopy(pixels,0,f.pixels,0,width*height);
+    f.width=width; f.height=height; f.path=path;
+    pending.add(f);
+    captured++;
+    highWater=Math.max(highWater,pending.size());
+    return true;
+  }
+
+  void write() {
+    BufferedImage img=null;
+    while (true) {
+      Frame f;
+      try {f=pending.take();} catch (InterruptedException e) {return;}
+      try {
+        if (img==null || img.getWidth()!=f.width || img.getHeight()!=f.height) img=new BufferedImage(f.width,f.height,BufferedImage.TYPE_INT_RGB);
+        img.setRGB(0,0,f.width,f.height,f.pixels,0,f.width);
+        File file=new File(f.path);
+        if (file.getParentFile()!=null) file.getParentFile().mkdirs();
+        ImageIO.write(img,format,file);
+        written++;
+      } catch (IOException e) {
+        failed++;
+      }
+      free.add(f);
+    }
+  }
+
+  String stats() {
+    return captured+" captured, "+written+" written, "+dropped+" dropped, "+waited+" waits, "+failed+" failed, queue high water "+highWater;
+  }
+}
@@ -0,0 +1,20 @@
+// Re-simulates recorded sessions headless at full speed and checks their final state:
+// java Replay session.bin...   exits with status 1 if any session diverges.
+
+class Replay {
+  public static void main(String[] args) throws Exception {
+    int bad=0;
+    long steps=0, t0=System.nanoTime();
+    for (String path : args) {
+      InputLog log=InputLog.load(path);
+      World w=log.newWorld();
+      boolean ok=log.replay(w);
+      steps+=log.steps;
+      if (!ok) bad++;
+      System.out.println(path+": "+log.steps+" steps, "+w.points+" hits, "+(ok ? "ok" : "DIVERGED (recorded "+log.points+" hits)"));
+    }
+    double s=(System.nanoTime()-t0)*1e-9;
+    System.out.println(args.length+" sessions, "+steps+" steps in "+(float)s+" s, "+(long)(steps/s)+" steps/s, "+bad+" diverged");
+    if (bad>0) System.exit(1);
+  }
+}
@@ -0,0 +1,126 @@
+// Headless self-play for difficulty balancing: plays many independent games per parameter set
+// with a scripted dodger on all cores and reports hit statistics per set, one CSV line each.
+//   java SelfPlay [policy=dodge] [games=200] [seconds=60] [balls=8] [hz=30] [out=selfplay.csv]
+//                 [g=200,300,400] [r=20,25,30] [respawn=3,4,5] [flight=1.5,2,2.5]
+// Every combination of the listed g, r, respawn and flight values is a set. Game k of every set
+// uses seed k, so sets are compared on the same dodger behaviour.
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+class SelfPlay {
+  static final String[] POLICIES={"still", "circle", "wander", "dodge"};
+
+  static Policy policy(String name, long seed) { // a fresh dodger of the named kind, its random choices drawn from seed
+    final Random rnd=new Random(seed);
+    if (name.equals("still")) return new Policy() { // stands at a random spot
+      float x=150+300*rnd.nextFloat(), y=150+300*rnd.nextFloat();
+      public void move(World w, float[] to) {to[0]=x; to[1]=y;}
+    };
+    if (name.equals("circle")) return new Policy() { // circles the center like World.main, from a random phase
+      float a=(float)(2*Math.PI*rnd.nextFloat());
+      public void move(World w, float[] to) {a+=1.5f*w.dt; to[0]=w.width/2+200*(float)Math.cos(a); to[1]=w.height/2+200*(float)Math.sin(a);}
+    };
+    if (name.equals("wander")) return new Policy() { // random walk with inertia
+      float x=w0(), y=w0(), vx, vy;
+      float w0() {return 150+300*rnd.nextFloat();}
+      public void move(World w, float[] to) {
+        vx=.95f*vx+40*(float)rnd.nextGaussian(); vy=.95f*vy+40*(float)rnd.nextGaussian();
+        x=Math.max(0,Math.min(w.width,x+vx*w.dt)); y=Math.max(0,Math.min(w.height,y+vy*w.dt));
+        to[0]=x; to[1]=y;
+      }
+    };
+    if (name.equals("dodge")) return new Policy() { // runs from where the balls will be shortly, drawn back toward the center
+      float look=.3f, reach=150;  // seconds ahead and distance at which balls are avoided
+      float jx=30*(float)rnd.nextGaussian(), jy=30*(float)rnd.nextGaussian();  // its own idea of the center
+      public void move(World w, float[] to) {
+        Spring s=w.springs[0];
+        BallStore b=w.balls;
+        float fx=0, fy=0;
+        for (int i=0; i<b.n; i++) {
+          float dx=s.tempxpos-(b.x[i]+b.vx[i]*look), dy=s.tempypos-(b.y[i]+b.vy[i]*look+.5f*b.gy[i]*look*look);
+          float d=(float)Math.sqrt(dx*dx+dy*dy)+1e-3f;
+          if (d<reach) {fx+=dx/d*(reach-d); fy+=dy/d*(reach-d);}  // out of its way
+        }
+        fx+=(w.width/2+jx-s.tempxpos)*.2f; fy+=(w.height/2+jy-s.tempypos)*.2f;
+        to[0]=Math.max(w.r,Math.min(w.width-w.r,s.tempxpos+fx));
+        to[1]=Math.max(w.r,Math.min(w.height-w.r,s.tempypos+fy));
+      }
+    };
+    throw new IllegalArgumentException("unknown policy "+name+", use one of "+Arrays.toString(POLICIES));
+  }
+
+  static int play(String policy, long seed, float g, float r, float respawn, float flight, int balls, float hz, float seconds) { // one game, returns its hits
+    World w=new World(600,600,hz);
+    w.gy=g; w.r=r; w.respawn=respawn; w.flight=flight;
+    w.respawnSteps=Math.round(respawn*hz);
+    w.balls.clear(); w.makeBalls(balls);
+    Policy p=policy(policy,seed);
+    float[] to={w.width/2,w.height/2};
+    for (long k=Math.round(seconds*hz); k>0; k--) {
+      p.move(w,to);
+      w.step(to[0],to[1]);
+    }
+    return w.points;
+  }
+
+  static float[] floats(String list) {
+    String[] v=list.split(",");
+    float[] f=new float[v.length];
+    for (int i=0; i<v.length; i++) f[i]=Float.parseFloat(v[i]);
+    return f;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String,String> o=new HashMap<String,String>();
+    o.put("policy","dodge"); o.put("games","200"); o.put("seconds","60"); o.put("balls","8"); o.put("hz","30"); o.put("out","selfplay.csv");
+    o.put("g","200,300,400"); o.put("r","20,25,30"); o.put("respawn","3,4,5"); o.put("flight","1.5,2,2.5");
+    for (String a : args) {
+      int e=a.indexOf('=');
+      if (e<0 || !o.containsKey(a.substring(0,e))) throw new IllegalArgumentException("bad argument "+a);
+      o.put(a.substring(0,e),a.substring(e+1));
+    }
+    final String policy=o.get("policy");
+    policy(policy,0);  // fails early on an unknown name
+    final int games=Integer.parseInt(o.get("games")), balls=Integer.parseInt(o.get("balls"));
+    final float seconds=Float.parseFloat(o.get("seconds")), hz=Float.parseFloat(o.get("hz"));
+    float[] G=floats(o.get("g")), R=floats(o.get("r")), S=floats(o.get("respawn")), F=floats(o.get("flight"));
+
+    List<float[]> sets=new ArrayList<float[]>();
+    for (float g : G) for (float r : R) for (float s : S) for (float f : F) sets.add(new float[] {g,r,s,f});
+    final int[][] hits=new int[sets.size()][games];
+    List<Callable<Object>> tasks=new ArrayList<Callable<Object>>();
+    for (int i=0; i<sets.size(); i++) for (int k=0; k<games; k++) {
+      final int set=i, game=k;
+      final float[] p=sets.get(i);
+      tasks.add(new Callable<Object>() {public Object call() {hits[set][game]=play(policy,game,p[0],p[1],p[2],p[3],balls,hz,seconds); return null;}});
+    }
+
+    int cores=Runtime.getRuntime().availableProcessors();
+    ExecutorService pool=Executors.newFixedThreadPool(cores);
+    long t0=System.nanoTime();
+    try {
+      for (Future<Object> f : pool.invokeAll(tasks)) f.get();  // rethrows the first failed game
+    } finally {pool.shutdown();}
+    double s=(System.nanoTime()-t0)*1e-9;
+
+    PrintWriter out=new PrintWriter(new FileWriter(o.get("out")));
+    try {
+      out.println("policy,g,r,respawn,flight,games,seconds,mean,sd,min,median,max,per_minute,no_hit_games");
+      for (int i=0; i<sets.size(); i++) {
+        int[] h=hits[i];
+        Arrays.sort(h);
+        double sum=0, sq=0;
+        int none=0;
+        for (int v : h) {sum+=v; sq+=(double)v*v; if (v==0) none++;}
+        double mean=sum/games, sd=Math.sqrt(Math.max(0,sq/games-mean*mean));
+        float[] p=sets.get(i);
+        out.println(policy+","+p[0]+","+p[1]+","+p[2]+","+p[3]+","+games+","+seconds+","+(float)mean+","+(float)sd+","
+          +h[0]+","+h[games/2]+","+h[games-1]+","+(float)(mean*60/seconds)+","+none);
+      }
+    } finally {out.close();}
+    long steps=(long)sets.size()*games*Math.round(seconds*hz);
+    System.out.println(sets.size()+" sets x "+games+" games, "+steps+" steps on "+cores+" cores in "+(float)s+" s, "+(long)(steps/s)+" steps/s, report in "+o.get("out"));
+  }
+}
@@ -0,0 +1,250 @@
+// Hosts many headless games in one JVM. Every session is a World stepped by one shared tick
+// scheduler at a fixed rate, the sessions of a tick split over a pool of one thread per core,
+// and each talks to its client over a TCP socket served by a single NIO selector thread.
+// Messages are a short length (of type and payload), a byte type and the payload, big endian:
+//   client  INPUT    float x, float y       pointer position, used from the next tick on
+//   server  WELCOME  int id, float hz, float width, float height
+//           REJECT   byte FULL or BUSY      then the connection is closed
+//           STATE    long frame, int points, float spring x and y, short n, n times float x and y
+// Admission control turns a client away when max sessions are running, or when the ticks of the
+// last second ran late (p99 over half a tick), so that the running sessions keep their rate.
+// Tick latency is the time from when a tick was due to when a session's state reached its
+// socket; each session keeps its own histogram, and every second the server prints them merged.
+//   java SessionServer [port=7777] [hz=30] [max=10000] [threads=cores]
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+class SessionServer {
+  static final byte INPUT=1, WELCOME=2, REJECT=3, STATE=4;  // message types
+  static final byte FULL=1, BUSY=2;                         // reasons for REJECT
+
+  static class Session {
+    final int id;
+    final SocketChannel channel;
+    SelectionKey key;
+    final World world;
+    volatile float mx, my;                          // last pointer received
+    final ByteBuffer in=ByteBuffer.allocate(256);   // partial input messages
+    ByteBuffer out=ByteBuffer.allocate(0);          // state not yet taken by the socket
+    final Latency latency=new Latency();
+    long dropped=0;                                 // states skipped because the client was not reading
+    volatile boolean closed=false;
+
+    Session(int pid, SocketChannel c, float hz) {
+      id=pid; channel=c;
+      world=new World(600,600,hz);
+      mx=my=300;
+    }
+  }
+
+  static class Latency { // histogram of microseconds in half-octave buckets: 1, 1.5, 2, 3, 4, 6, 8...
+    final int[] counts=new int[64];
+    long n=0, max=0;
+
+    static int bucket(long us) {
+      if (us<2) return (int)Math.max(us,0);
+      int b=63-Long.numberOfLeadingZeros(us);
+      return Math.min(63,2*b+(int)((us>>(b-1))&1));
+    }
+    static long upper(int k) {return k<2 ? k+1 : (3L+(k&1))<<(k/2-1);}  // microseconds below which bucket k ends
+
+    void add(long nanos) {long us=nanos/1000; counts[bucket(us)]++; n++; max=Math.max(max,us);}
+    void addAll(Latency l) {for (int k=0; k<64; k++) counts[k]+=l.counts[k]; n+=l.n; max=Math.max(max,l.max);}
+    void clear() {Arrays.fill(counts,0); n=0; max=0;}
+    long percentile(double p) { // upper edge of the bucket holding the p-th percentile, in microseconds
+      long want=(long)Math.ceil(p/100*n), seen=0;
+      for (int k=0; k<64; k++) if ((seen+=counts[k])>=want && seen>0) return Math.min(upper(k),max);
+      return 0;
+    }
+  }
+
+  float hz;
+  long period;                 // nanoseconds per tick
+  int max;                     // sessions admitted at most
+  volatile Session[] sessions=new Session[0];
+  int nextId=1;
+  volatile boolean overloaded=false;  // the last second ran late, new sessions are refused
+  Selector selector;
+  ServerSocketChannel server;
+  ExecutorService pool;
+  List<Callable<Object>> chunks=new ArrayList<Callable<Object>>();
+  long start, ticks=0, lastReport, lastTicks=0;
+  long rejected=0, closedCount=0;
+  Latency second=new Latency();  // all sessions over the current second
+  long busy=0;                   // nanoseconds spent ticking in the current second
+
+  SessionServer(int port, float phz, int pmax, int threads) throws IOException {
+    hz=phz; period=Math.round(1e9/hz); max=pmax;
+    selector=Selector.open();
+    server=ServerSocketChannel.open();
+    server.socket().setReuseAddress(true);
+    server.socket().bind(new InetSocketAddress(port),1024);
+    server.configureBlocking(false);
+    server.register(selector,SelectionKey.OP_ACCEPT);
+    pool=Executors.newFixedThreadPool(threads);
+    for (int k=0; k<threads; k++) {
+      final int id=k, of=threads;
+      chunks.add(new Callable<Object>() {public Object call() {
+        Session[] all=tickSessions;
+        for (int i=all.length*id/of; i<all.length*(id+1)/of; i++) step(all[i],tickDue);
+        return null;
+      }});
+    }
+  }
+
+  Session[] tickSessions;  // sessions of the tick running, read by the chunks
+  long tickDue;            // nanoTime the tick running was due at
+
+  void start() { // starts ticking on its own thread
+    ScheduledExecutorService clock=Executors.newSingleThreadScheduledExecutor();
+    clock.scheduleAtFixedRate(new Runnable() {public void run() {
+      try {tick();} catch (Throwable e) {e.printStackTrace();}
+    }}, 0, period, TimeUnit.NANOSECONDS);
+  }
+
+  void tick() throws InterruptedException {
+    if (ticks==0) start=lastReport=System.nanoTime();  // the schedule counts from the first tick
+    tickDue=start+ticks*period;
+    ticks++;
+    tickSessions=sessions;
+    long t0=System.nanoTime();
+    pool.invokeAll(chunks);
+    long t1=System.nanoTime();
+    busy+=t1-t0;
+    if (t1-lastReport>=1000000000L) report(t1);
+  }
+
+  void step(Session s, long due) { // steps the world of s and sends its state
+    if (s.closed) return;
+    World w=s.world;
+    w.step(s.mx,s.my);
+    synchronized (s) {
+      if (s.out.hasRemaining()) {s.dropped++; return;}  // the client has not taken the previous state yet
+      BallStore b=w.balls;
+      ByteBuffer o=s.out;
+      int len=1+8+4+8+2+8*b.n;
+      if (o.capacity()<2+len) o=s.out=ByteBuffer.allocate(2+len+64);
+      o.clear();
+      o.putShort((short)len).put(STATE).putLong(w.frames).putInt(w.points);
+      o.putFloat(w.springs[0].tempxpos).putFloat(w.springs[0].tempypos).putShort((short)b.n);
+      for (int i=0; i<b.n; i++) o.putFloat(b.x[i]).putFloat(b.y[i]);
+      o.flip();
+      if (!flush(s)) return;
+    }
+    s.latency.add(System.nanoTime()-due);
+  }
+
+  boolean flush(Session s) { // writes what the socket takes of s.out, asks the selector for the rest; false if the client is gone
+    try {
+      s.channel.write(s.out);
+      int ops=SelectionKey.OP_READ|(s.out.hasRemaining() ? SelectionKey.OP_WRITE : 0);
+      if (s.key.interestOps()!=ops) {s.key.interestOps(ops); selector.wakeup();}
+      return true;
+    } 
+    catch (IOException e) {close(s); return false;}
+    catch (CancelledKeyException e) {close(s); return false;}  // closed meanwhile by the selector thread
+  }
+
+  void report(long now) {
+    Session[] all=sessions;
+    long dropped=0;
+    for (Session s : all) {second.addAll(s.latency); s.latency.clear(); dropped+=s.dropped; s.dropped=0;}
+    double seconds=(now-lastReport)*1e-9;
+    overloaded=second.n>0 && second.percentile(99)*1000>period/2;
+    System.out.println(String.format("%6d sessions %5.1f ticks/s %4.0f%% busy  latency p50 %6.2f p99 %6.2f max %6.2f ms  %d dropped %d rejected %d closed%s",
+      all.length, (ticks-lastTicks)/seconds, 100*busy*1e-9/seconds, second.percentile(50)/1000.0, second.percentile(99)/1000.0, second.max/1000.0,
+      dropped, rejected, closedCount, overloaded ? "  OVERLOADED" : ""));
+    second.clear(); busy=0; lastReport=now; lastTicks=ticks;
+  }
+
+  void serve() throws IOException { // the selector loop, never returns
+    while (true) {
+      selector.select();
+      for (Iterator<SelectionKey> it=selector.selectedKeys().iterator(); it.hasNext();) {
+        SelectionKey k=it.next();
+        it.remove();
+        if (!k.isValid()) continue;
+        if (k.isAcceptable()) {accept(); continue;}
+        Session s=(Session)k.attachment();
+        if (k.isReadable()) read(s);
+        if (k.isValid() && k.isWritable()) synchronized (s) {flush(s);}
+      }
+    }
+  }
+
+  void accept() throws IOException {
+    SocketChannel c;
+    while ((c=server.accept())!=null) {
+      c.configureBlocking(false);
+      c.socket().setTcpNoDelay(true);
+      byte reason = sessions.length>=max ? FULL : overloaded ? BUSY : 0;
+      if (reason!=0) { // a fresh socket always takes these few bytes
+        ByteBuffer m=ByteBuffer.allocate(4);
+        m.putShort((short)2).put(REJECT).put(reason).flip();
+        try {c.write(m);} catch (IOException e) {}
+        c.close();
+        rejected++;
+        continue;
+      }
+      Session s=new Session(nextId++,c,hz);
+      s.key=c.register(selector,SelectionKey.OP_READ,s);
+      synchronized (s) {
+        s.out=ByteBuffer.allocate(64);
+        s.out.putShort((short)17).put(WELCOME).putInt(s.id).putFloat(hz).putFloat(s.world.width).putFloat(s.world.height).flip();
+        if (!flush(s)) continue;
+      }
+      synchronized (this) {
+        Session[] a=Arrays.copyOf(sessions,sessions.length+1);
+        a[a.length-1]=s;
+        sessions=a;
+      }
+    }
+  }
+
+  void read(Session s) {
+    int r;
+    try {r=s.channel.read(s.in);} catch (IOException e) {r=-1;}
+    if (r<0) {close(s); return;}
+    ByteBuffer in=s.in;
+    in.flip();
+    while (in.remaining()>=2) {
+      int len=in.getShort(in.position())&0xFFFF;
+      if (len<1 || len>in.capacity()-2) {close(s); return;}  // not our protocol
+      if (in.remaining()<2+len) break;
+      in.getShort();
+      int end=in.position()+len;
+      if (in.get()==INPUT && len==9) {s.mx=in.getFloat(); s.my=in.getFloat();}
+      in.position(end);
+    }
+    in.compact();
+  }
+
+  void close(Session s) {
+    synchronized (this) {
+      if (s.closed) return;
+      s.closed=true;
+      List<Session> a=new ArrayList<Session>(Arrays.asList(sessions));
+      a.remove(s);
+      sessions=a.toArray(new Session[a.size()]);
+      closedCount++;
+    }
+    if (s.key!=null) s.key.cancel();
+    try {s.channel.close();} catch (IOException e) {}
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length>0 ? Integer.parseInt(args[0]) : 7777;
+    float hz = args.length>1 ? Float.parseFloat(args[1]) : 30;
+    int max = args.length>2 ? Integer.parseInt(args[2]) : 10000;
+    int threads = args.length>3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    SessionServer s=new SessionServer(port,hz,max,threads);
+    System.out.println("serving "+hz+" Hz sessions on port "+port+", at most "+max+", "+threads+" threads");
+    s.start();
+    s.serve();
+  }
+}
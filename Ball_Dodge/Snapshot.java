@@ -0,0 +1,120 @@
+// The whole simulated state of a World in one fixed-layout ByteBuffer, big endian, so a game can
+// be checkpointed to disk or rewound. Layout (byte offsets):
+//    0 int magic 'BDSN', 4 short version, 6 short flags (World modes, as in InputLog),
+//    8 long frames, 16 int points, 20 int balls n, 24 int wave patterns e, 28 float tx, 32 float ty,
+//   36 byte spring collide, 40 floats spring xpos ypos tempxpos tempypos prevxpos prevypos
+//      rest_posx rest_posy velx vely,
+//   80 longs: balls spawned by each pattern (e), lt (n),
+//      then floats by column: x y px py vx vy hx hy ox oy ovx ovy gy r m (n each),
+//      ints: c f (n each), bytes: collide (n).
+// Columns are copied in bulk through views made once per buffer, so taking a snapshot every
+// frame allocates nothing. Rules (gravity, radius, rates, patterns) are not stored: a snapshot
+// is restored into a World built with the same settings.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+class Snapshot {
+  static final int MAGIC=0x4244534E, VERSION=1;  // "BDSN"
+  static final int HEADER=80, FLOATS=15;
+
+  ByteBuffer data;
+  FloatBuffer floats;  // views of data from offset 0
+  IntBuffer ints;
+  LongBuffer longs;
+
+  Snapshot(int bytes) {
+    data=ByteBuffer.allocate(bytes);  // big endian
+    floats=data.asFloatBuffer(); ints=data.asIntBuffer(); longs=data.asLongBuffer();
+  }
+
+  static int size(int balls, int entries) {return HEADER+8*entries+(8+4*FLOATS+4*2+1)*balls;}
+
+  static int size(World w) {return size(w.balls.n,entries(w));}    // bytes a snapshot of w takes now
+  static int room(World w) {return size(w.balls.capacity(),entries(w));}  // bytes any snapshot of w takes until its pool grows
+  static int entries(World w) {return w.waves==null ? 0 : w.waves.entries;}
+
+  int length() {return size(data.getInt(20),data.getInt(24));}  // bytes used by the snapshot held
+  long frames() {return data.getLong(8);}
+
+  void take(World w) { // writes the state of w, which must fit
+    BallStore b=w.balls;
+    int n=b.n, e=entries(w);
+    if (size(n,e)>data.capacity()) throw new IllegalStateException("snapshot of "+size(n,e)+" bytes does not fit in "+data.capacity());
+    data.putInt(0,MAGIC); data.putShort(4,(short)VERSION);
+    data.putShort(6,(short)((w.ballCollisions ? InputLog.BOUNCE : 0) | (w.trajectories ? InputLog.TRAJECTORIES : 0) | (w.continuous ? InputLog.CONTINUOUS : 0)));
+    data.putLong(8,w.frames); data.putInt(16,w.points); data.putInt(20,n); data.putInt(24,e);
+    data.putFloat(28,w.tx); data.putFloat(32,w.ty);
+    Spring s=w.springs[0];
+    data.put(36,(byte)(s.collide ? 1 : 0));
+    floats.position(10);
+    floats.put(s.xpos).put(s.ypos).put(s.tempxpos).put(s.tempypos).put(s.prevxpos).put(s.prevypos);
+    floats.put(s.rest_posx).put(s.rest_posy).put(s.velx).put(s.vely);
+    longs.position(HEADER/8);
+    if (e>0) longs.put(w.waves.spawned,0,e);
+    longs.put(b.lt,0,n);
+    floats.position(longs.position()*2);
+    floats.put(b.x,0,n).put(b.y,0,n).put(b.px,0,n).put(b.py,0,n).put(b.vx,0,n).put(b.vy,0,n);
+    floats.put(b.hx,0,n).put(b.hy,0,n).put(b.ox,0,n).put(b.oy,0,n).put(b.ovx,0,n).put(b.ovy,0,n);
+    floats.put(b.gy,0,n).put(b.r,0,n).put(b.m,0,n);
+    ints.position(floats.position());
+    ints.put(b.c,0,n).put(b.f,0,n);
+    int at=ints.position()*4;
+    for (int i=0; i<n; i++) data.put(at+i,(byte)(b.collide[i] ? 1 : 0));
+  }
+
+  void restore(World w) { // puts w back in the state held; w must have the settings of the world it was taken from
+    if (data.getInt(0)!=MAGIC) throw new IllegalArgumentException("not a world snapshot");
+    int version=data.getShort(4);
+    if (version!=VERSION) throw new IllegalArgumentException("unsupported snapshot version "+version);
+    int n=data.getInt(20), e=data.getInt(24);
+    if (e!=entries(w)) throw new IllegalArgumentException("snapshot has "+e+" wave patterns, the world "+entries(w));
+    BallStore b=w.balls;
+    if (b.capacity()<n) b.grow(n);
+    b.n=n;
+    int flags=data.getShort(6);
+    w.ballCollisions=(flags&InputLog.BOUNCE)!=0;
+    w.trajectories=(flags&InputLog.TRAJECTORIES)!=0;  // not setTrajectories(): the trajectories are restored as they were
+    w.continuous=(flags&InputLog.CONTINUOUS)!=0;
+    w.frames=data.getLong(8); w.points=data.getInt(16);
+    w.tx=data.getFloat(28); w.ty=data.getFloat(32);
+    Spring s=w.springs[0];
+    s.collide=data.get(36)!=0;
+    floats.position(10);
+    s.xpos=floats.get(); s.ypos=floats.get(); s.tempxpos=floats.get(); s.tempypos=floats.get(); s.prevxpos=floats.get(); s.prevypos=floats.get();
+    s.rest_posx=floats.get(); s.rest_posy=floats.get(); s.velx=floats.get(); s.vely=floats.get();
+    longs.position(HEADER/8);
+    if (e>0) longs.get(w.waves.spawned,0,e);
+    longs.get(b.lt,0,n);
+    floats.position(longs.position()*2);
+    floats.get(b.x,0,n).get(b.y,0,n).get(b.px,0,n).get(b.py,0,n).get(b.vx,0,n).get(b.vy,0,n);
+    floats.get(b.hx,0,n).get(b.hy,0,n).get(b.ox,0,n).get(b.oy,0,n).get(b.ovx,0,n).get(b.ovy,0,n);
+    floats.get(b.gy,0,n).get(b.r,0,n).get(b.m,0,n);
+    ints.position(floats.position());
+    ints.get(b.c,0,n).get(b.f,0,n);
+    int at=ints.position()*4;
+    for (int i=0; i<n; i++) b.collide[i]=data.get(at+i)!=0;
+    b.markAll();  // every ball may have changed
+    w.ccd=null;  // its wheel is rebuilt from the restored balls
+    if (w.body!=null) w.body.place(s.tempxpos,s.tempypos);  // not in the snapshot, it starts again at rest
+  }
+
+  void save(String path) throws IOException { // writes the snapshot held, as a checkpoint
+    File file=new File(path);
+    if (file.getParentFile()!=null) file.getParentFile().mkdirs();
+    FileOutputStream out=new FileOutputStream(file);
+    try {out.write(data.array(),0,length());} finally {out.close();}
+  }
+
+  static Snapshot load(String path) throws IOException {
+    FileChannel in=new FileInputStream(path).getChannel();
+    try {
+      Snapshot s=new Snapshot((int)in.size());
+      while (s.data.hasRemaining() && in.read(s.data)>=0) {}
+      s.data.clear();
+      if (s.data.capacity()<HEADER || s.length()>s.data.capacity()) throw new IOException(path+" is not a complete world snapshot");
+      return s;
+    } finally {in.close();}
+  }
+}
@@ -0,0 +1,50 @@
+// The last few seconds of a game as a ring of preallocated snapshots, for instant rewind.
+// push() overwrites the oldest snapshot in place; slots are only reallocated when the
+// world's ball pool grows past what they were sized for. The slots share a byte budget:
+// when a snapshot is large there are fewer of them, taken further apart, so that the ring
+// still reaches back the whole span.
+
+class SnapshotRing {
+  Snapshot[] slots;
+  int next=0;    // slot the next push writes
+  int count=0;   // snapshots held
+  long budget;   // bytes all the slots may take together
+  long span;     // steps of the game the ring reaches back
+  long gap=1;    // fewest steps between two snapshots held
+
+  SnapshotRing(long pbudget, long pspan, World w) { // keeps snapshots of w over the last pspan steps in at most pbudget bytes
+    budget=pbudget; span=Math.max(1,pspan);
+    alloc(w);
+  }
+
+  void alloc(World w) {
+    int bytes=Snapshot.room(w);
+    int size=(int)Math.max(2,Math.min(span+1,budget/bytes));  // two at least, or there is nothing to go back to
+    slots=new Snapshot[size];
+    for (int i=0; i<size; i++) slots[i]=new Snapshot(bytes);
+    gap=(span+size-2)/(size-1);  // size snapshots gap steps apart reach back span steps
+    clear();
+  }
+
+  void clear() {next=0; count=0;}
+
+  Snapshot newest(int back) {return slots[((next-1-back)%slots.length+slots.length)%slots.length];}
+
+  void push(World w) { // takes a snapshot of w unless the newest one is less than gap steps old, dropping the oldest if the ring is full
+    if (Snapshot.size(w)>slots[0].data.capacity()) alloc(w);  // older snapshots are lost with the old slots
+    if (count>0 && w.frames>=newest(0).frames() && w.frames-newest(0).frames()<gap) return;
+    slots[next].take(w);
+    next=(next+1)%slots.length;
+    count=Math.min(count+1,slots.length);
+  }
+
+  boolean rewind(World w, long frames) { // restores w to the newest snapshot taken at or before step frames, or the oldest held; later ones are dropped
+    if (count==0) return false;
+    int back=0;
+    while (back<count-1 && newest(back).frames()>frames) back++;
+    newest(back).restore(w);
+    next=(next-back+slots.length)%slots.length;
+    count-=back;
+    return true;
+  }
+}
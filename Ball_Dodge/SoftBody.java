@@ -0,0 +1,170 @@
+// Soft-body player avatar: a tire of two rings of nodes held together by distance constraints,
+// integrated with position Verlet and relaxed several times per step. Every node is pulled toward
+// its place in the rest shape around the player spring, so the body follows the mouse, lags and
+// wobbles as it goes, and is dented by the balls that hit it. The outer ring is its hull, which
+// World.processCollisions tests against the balls instead of the player's disk.
+// Constraints are colored so that no two of one color share a node: a color can be relaxed in any
+// order, or in chunks on all cores, and gives the same positions as the sequential solver.
+
+class SoftBody {
+  static final int NODES=128;  // per ring, for the player
+  int n;                    // nodes per ring, the outer ring is 0..n-1 and the inner one n..2n-1
+  float[] x, y, px, py;     // positions now and at the previous step, Verlet takes the velocity from their difference
+  float[] ox, oy;           // rest shape, around the anchor
+  int[] ca, cb;             // nodes joined by each constraint, sorted by color
+  float[] rest;             // their distance in the rest shape
+  int[] colorStart;         // constraints of color c are colorStart[c]..colorStart[c+1]-1
+  int iterations=8;         // relaxations per step
+  float stiffness=400;      // pull toward the rest shape, per second squared
+  float damp=0.9f;          // velocity kept per 1/30 s
+  float dentDepth=.8f;      // fraction of a ball's radius the hull is pushed out to, short of its edge so the ball keeps touching it
+  int parallelMin=4096;     // constraints of one color below which splitting it is not worth the wait
+  float minx, miny, maxx, maxy;  // bounds of the hull at this step and the previous one
+  float cx, cy, rin, rout;  // center of the hull, distance from it to the nearest edge (-1 if outside) and to the farthest node
+  float ax, ay, h, kd;      // anchor, step and damping of the step being taken
+
+  SoftBody(int pn, float radius, float thickness, float cx, float cy) {
+    n=Math.max(3,pn);
+    x=new float[2*n]; y=new float[2*n]; px=new float[2*n]; py=new float[2*n];
+    ox=new float[2*n]; oy=new float[2*n];
+    for (int i=0; i<n; i++) { // the inner ring sits between the outer nodes, so the strip is made of triangles
+      double a=2*Math.PI*i/n, b=2*Math.PI*(i+.5)/n;
+      ox[i]=radius*(float)Math.cos(a); oy[i]=radius*(float)Math.sin(a);
+      ox[n+i]=(radius-thickness)*(float)Math.cos(b); oy[n+i]=(radius-thickness)*(float)Math.sin(b);
+    }
+    int[] a=new int[5*n], b=new int[5*n];
+    int m=0;
+    for (int i=0; i<n; i++) {
+      int j=(i+1)%n;
+      a[m]=i; b[m++]=j;             // outer rim
+      a[m]=n+i; b[m++]=n+j;         // inner rim
+      a[m]=i; b[m++]=n+i;           // the two sides of each triangle across the strip
+      a[m]=n+i; b[m++]=j;
+      a[m]=i; b[m++]=(i+2)%n;       // bending, keeps the rim from folding
+    }
+    color(a,b,m);
+    place(cx,cy);
+  }
+
+  void color(int[] a, int[] b, int m) { // sorts the constraints by a greedy coloring of their nodes
+    long[] used=new long[2*n];      // colors already taken at each node
+    int[] c=new int[m];
+    int colors=0;
+    for (int k=0; k<m; k++) {
+      c[k]=Long.numberOfTrailingZeros(~(used[a[k]]|used[b[k]]));
+      used[a[k]]|=1L<<c[k]; used[b[k]]|=1L<<c[k];
+      colors=Math.max(colors,c[k]+1);
+    }
+    colorStart=new int[colors+1];
+    for (int k=0; k<m; k++) colorStart[c[k]+1]++;
+    for (int k=0; k<colors; k++) colorStart[k+1]+=colorStart[k];
+    int[] at=java.util.Arrays.copyOf(colorStart,colors);
+    ca=new int[m]; cb=new int[m]; rest=new float[m];
+    for (int k=0; k<m; k++) {
+      int e=at[c[k]]++;
+      ca[e]=a[k]; cb[e]=b[k];
+      rest[e]=(float)Math.sqrt(World.sq(ox[a[k]]-ox[b[k]])+World.sq(oy[a[k]]-oy[b[k]]));
+    }
+  }
+
+  void place(float cx, float cy) { // puts the body at rest around (cx,cy)
+    for (int i=0; i<2*n; i++) {x[i]=px[i]=cx+ox[i]; y[i]=py[i]=cy+oy[i];}
+    bounds();
+  }
+
+  void step(float pax, float pay, float dt, ParallelStepper p) { // advances the body by dt seconds toward its rest shape around (pax,pay), on p's cores when set
+    ax=pax; ay=pay; h=dt;
+    kd=(float)Math.pow(damp,30*dt);
+    boolean split = p!=null && 2*n>=parallelMin;
+    if (split) p.run(ParallelStepper.INTEGRATE,0,2*n); else integrate(0,2*n);
+    for (int it=0; it<iterations; it++)
+      for (int c=0; c+1<colorStart.length; c++) {
+        int from=colorStart[c], to=colorStart[c+1];
+        if (p!=null && to-from>=parallelMin) p.run(ParallelStepper.RELAX,from,to); else relax(from,to);
+      }
+    bounds();
+  }
+
+  void integrate(int from, int to) { // Verlet step of nodes from..to-1
+    float hh=h*h;
+    for (int i=from; i<to; i++) {
+      float vx=(x[i]-px[i])*kd, vy=(y[i]-py[i])*kd;
+      px[i]=x[i]; py[i]=y[i];
+      x[i]+=vx+stiffness*(ax+ox[i]-x[i])*hh;
+      y[i]+=vy+stiffness*(ay+oy[i]-y[i])*hh;
+    }
+  }
+
+  void relax(int from, int to) { // moves the nodes of constraints from..to-1 to their rest distance, each by half the error
+    for (int k=from; k<to; k++) {
+      int a=ca[k], b=cb[k];
+      float dx=x[b]-x[a], dy=y[b]-y[a], d=(float)Math.sqrt(dx*dx+dy*dy);
+      if (d==0) continue;
+      float e=.5f*(d-rest[k])/d;
+      x[a]+=dx*e; y[a]+=dy*e; x[b]-=dx*e; y[b]-=dy*e;
+    }
+  }
+
+  void bounds() { // also the disks around the center that hold the hull and that it holds
+    minx=miny=Float.MAX_VALUE; maxx=maxy=-Float.MAX_VALUE;
+    cx=cy=0;
+    for (int i=0; i<n; i++) {
+      minx=Math.min(minx,Math.min(x[i],px[i])); maxx=Math.max(maxx,Math.max(x[i],px[i]));
+      miny=Math.min(miny,Math.min(y[i],py[i])); maxy=Math.max(maxy,Math.max(y[i],py[i]));
+      cx+=x[i]; cy+=y[i];
+    }
+    cx/=n; cy/=n;
+    rout=0;
+    for (int i=0; i<n; i++) rout=Math.max(rout,World.sq(x[i]-cx)+World.sq(y[i]-cy));
+    rout=(float)Math.sqrt(rout);
+    rin = inside(cx,cy) ? edges(cx,cy) : -1;
+  }
+
+  boolean inside(float bx, float by) { // crossing number of the hull
+    boolean in=false;
+    for (int i=0, j=n-1; i<n; j=i++)
+      if ((y[i]>by)!=(y[j]>by) && bx<x[j]+(x[i]-x[j])*(by-y[j])/(y[i]-y[j])) in=!in;
+    return in;
+  }
+
+  float edges(float bx, float by) { // from (bx,by) to the nearest edge of the hull
+    float best=Float.MAX_VALUE;
+    for (int i=0, j=n-1; i<n; j=i++) {
+      float x0=x[j], y0=y[j], dx=x[i]-x0, dy=y[i]-y0;
+      float l=dx*dx+dy*dy, t = l>0 ? Math.max(0,Math.min(1,((bx-x0)*dx+(by-y0)*dy)/l)) : 0;
+      best=Math.min(best,World.sq(x0+t*dx-bx)+World.sq(y0+t*dy-by));
+    }
+    return (float)Math.sqrt(best);
+  }
+
+  float distance(float bx, float by) {return inside(bx,by) ? 0 : edges(bx,by);} // from (bx,by) to the hull, 0 inside it
+
+  void touch(BallStore b, byte[] t, int from, int to) { // classifies balls from..to-1 against the hull as World.touchPlayer does against the disk
+    for (int i=from; i<to; i++) {
+      float r=b.r[i], bx=b.x[i], by=b.y[i], d2=World.sq(bx-cx)+World.sq(by-cy);
+      if (d2>World.sq(r+rout)) t[i]=World.FAR;                  // clear of the disk holding the hull
+      else if (rin>=0 && d2<World.sq(r+rin)) t[i]=World.NEAR;   // reaches into the disk the hull holds
+      else {
+        float d=distance(bx,by);
+        t[i] = d<r ? World.NEAR : d>r ? World.FAR : 0;
+      }
+    }
+  }
+
+  void dent(BallStore b, byte[] t) { // pushes hull nodes out of the balls touching it, the next step turns that into velocity
+    boolean moved=false;
+    for (int i=0; i<b.n; i++) {
+      if (t[i]!=World.NEAR) continue;
+      float r=b.r[i]*dentDepth, bx=b.x[i], by=b.y[i];
+      if (World.sq(bx-cx)+World.sq(by-cy)>=World.sq(r+rout)) continue;  // reaches no node
+      for (int k=0; k<n; k++) {
+        float dx=x[k]-bx, dy=y[k]-by, d2=dx*dx+dy*dy;
+        if (d2>=r*r || d2==0) continue;
+        float s=r/(float)Math.sqrt(d2);
+        x[k]=bx+dx*s; y[k]=by+dy*s;
+        moved=true;
+      }
+    }
+    if (moved) bounds();
+  }
+}
@@ -0,0 +1,65 @@
+// Spring-mass player avatar, stepped headless by World and drawn by the sketch
+// reference http://processing.org/learning/topics/springs.html
+
+class Spring 
+{ 
+  // Screen values 
+  float xpos, ypos;
+  float tempxpos, tempypos; 
+  float prevxpos, prevypos;  // position at the previous step, for render interpolation
+  int size = 20; 
+  boolean move = false; 
+  boolean collide = false;
+
+  // Spring simulation constants 
+  float mass;       // Mass 
+  float k = 0.2f;   // Spring constant 
+  float damp;       // Damping 
+  float rest_posx;  // Rest position X 
+  float rest_posy;  // Rest position Y 
+
+  // Spring simulation variables 
+  float velx = 0.0f;  // X Velocity 
+  float vely = 0.0f;  // Y Velocity 
+  float accel = 0;    // Acceleration 
+  float force = 0;    // Force 
+
+  Spring[] friends;
+  int me;
+
+  // Constructor
+  Spring(float x, float y, int s, float d, float m, 
+  float k_in, float rx, float ry, Spring[] others, int id, boolean collz) 
+  { 
+    xpos = tempxpos = prevxpos = x; 
+    ypos = tempypos = prevypos = y;
+    rest_posx = rx;
+    rest_posy = ry;
+    size = s;
+    damp = d; 
+    mass = m; 
+    k = k_in;
+    friends = others;
+    me = id;
+    collide = collz;
+  } 
+
+  void update(float rx, float ry, float h) // pulls the spring towards rest position (rx,ry), usually the mouse, over h frames of 1/30 s
+  { 
+    rest_posy = ry; 
+    rest_posx = rx;
+    prevxpos = tempxpos;
+    prevypos = tempypos;
+    float d = h==1 ? damp : (float)Math.pow(damp,h);  // damping per step, so the motion does not depend on the physics rate
+
+    force = -k * (tempypos - rest_posy);  // f=-ky 
+    accel = force / mass;                 // Set the acceleration, f=ma == a=f/m 
+    vely = d * (vely + accel*h);          // Set the velocity 
+    tempypos = tempypos + vely*h;         // Updated position 
+
+    force = -k * (tempxpos - rest_posx);  // f=-ky 
+    accel = force / mass;                 // Set the acceleration, f=ma == a=f/m 
+    velx = d * (velx + accel*h);          // Set the velocity 
+    tempxpos = tempxpos + velx*h;         // Updated position
+  } 
+} 
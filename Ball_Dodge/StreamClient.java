@@ -0,0 +1,92 @@
+// Watches a game streamed by StreamServer: rebuilds each packet on the state it names as its
+// baseline, acknowledges it, and shows the result in a World of its own that the sketch draws
+// with showBalls and showSpring. poll() never blocks.
+//   java StreamClient [host=127.0.0.1] [port=7780] [seconds=10]   reports what a headless viewer gets
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+class StreamClient {
+  SocketChannel channel;
+  ByteBuffer in=ByteBuffer.allocate(1<<16);
+  ByteBuffer ack=ByteBuffer.allocate(7);
+  StreamState[] states=new StreamState[StreamState.RING];  // received, by sequence number
+  StreamState latest;
+  World world;          // shows the latest state
+  long bytes=0, packets=0;
+
+  StreamClient(String host, int port) throws IOException {
+    channel=SocketChannel.open(new InetSocketAddress(host,port));
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    for (int k=0; k<states.length; k++) states[k]=new StreamState();
+    world=new World(600,600);
+    world.balls.clear();
+  }
+
+  boolean poll() throws IOException { // reads what has arrived, returns true if the world shows a newer state
+    int r=channel.read(in);
+    if (r<0) throw new IOException("stream closed");
+    StreamState got=null;
+    in.flip();
+    while (in.remaining()>=2) {
+      int len=in.getShort(in.position())&0xFFFF;
+      if (in.remaining()<2+len) break;
+      in.getShort();
+      int next=in.position()+len;
+      byte type=in.get();
+      if (type==StreamState.HELLO) {world.width=in.getFloat(); world.height=in.getFloat(); world.hz=in.getFloat(); world.dt=1.f/world.hz;}
+      if (type==StreamState.STATE) {got=decode(in); bytes+=2+len; packets++;}
+      in.position(next);
+    }
+    in.compact();
+    if (!in.hasRemaining()) in=ByteBuffer.allocate(2*in.capacity()).put(in.flip());  // a packet larger than the buffer
+    if (got==null) return false;
+    ack.clear();
+    ack.putShort((short)5).put(StreamState.ACK).putInt(got.seq).flip();
+    channel.write(ack);  // 7 bytes, the socket always takes them
+    latest=got;
+    got.show(world);
+    return true;
+  }
+
+  StreamState decode(ByteBuffer p) throws IOException {
+    int seq=p.getInt(), from=p.getInt(), step=p.getInt(), mode=p.get();
+    StreamState base = from<0 ? StreamState.EMPTY : states[from%StreamState.RING];
+    if (base.seq!=from) throw new IOException("packet "+seq+" is built on state "+from+", which is gone");
+    StreamState s=states[seq%StreamState.RING];
+    s.copy(base); s.seq=seq; s.step=step; s.mode=mode;
+    int n=StreamState.get(p);
+    s.ensure(n);
+    for (int i=s.n; i<n; i++) s.clear(i);
+    s.n=n;
+    s.points+=StreamState.get(p); s.sx+=StreamState.get(p); s.sy+=StreamState.get(p);
+    for (int i; (i=StreamState.get(p)-1)>=0;) {
+      int fields=p.get();
+      if ((fields&StreamState.KEY)!=0) s.key(i,step-StreamState.get(p),p.getFloat(),p.getFloat(),p.getFloat(),p.getFloat(),p.getFloat());
+      if ((fields&StreamState.COLOR)!=0) s.c[i]=p.getInt();
+      if ((fields&StreamState.RADIUS)!=0) s.r[i]=p.getFloat();
+    }
+    return s;
+  }
+
+  void close() {try {channel.close();} catch (IOException e) {}}
+
+  public static void main(String[] args) throws Exception {
+    StreamClient c=new StreamClient(args.length>0 ? args[0] : "127.0.0.1", args.length>1 ? Integer.parseInt(args[1]) : StreamServer.PORT);
+    float seconds = args.length>2 ? Float.parseFloat(args[2]) : 10;
+    long t0=System.nanoTime(), report=t0+1000000000L, b0=0, p0=0;
+    while (System.nanoTime()-t0<seconds*1e9) {
+      c.poll();
+      if (System.nanoTime()>=report) {
+        long p=c.packets-p0;
+        System.out.println(p+" states/s, "+(c.bytes-b0)+" bytes/s, "+c.world.balls.n+" balls, "+c.world.points+" hits");
+        p0=c.packets; b0=c.bytes; report+=1000000000L;
+      }
+      Thread.sleep(5);
+    }
+    c.close();
+  }
+}
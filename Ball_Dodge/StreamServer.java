@@ -0,0 +1,228 @@
+// Streams a game to spectators over non-blocking TCP. Every publish() rekeys the balls that changed
+// (see StreamState) and logs their slots; each viewer is then sent the logged keys its state lacks,
+// so both the bytes and the work per tick follow launches and bounces rather than the ball count.
+// TCP delivers every packet in order, so each packet builds on the one before it and the server
+// updates a single state per viewer in place. Only a viewer the log does not reach back to, as when
+// it joins, is compared ball by ball. The changes of the tick always go out; what a viewer still
+// lacks beyond them, as after joining a crowded game, goes within a byte budget per packet and
+// waits for later packets, which carry on from where this one stopped. A tick that changes more
+// than a packet can hold, as when the modes switch and every ball is rekeyed, is caught up the same
+// way. While the changes come faster than the budget, each packet may catch up twice their average
+// over the logged ticks instead, so a viewer behind always gains on the game.
+// A viewer whose socket has not taken its previous packets, or that has not acknowledged any of
+// the last RING, skips this one; the next carries what it missed, so nothing is lost, only
+// delayed. publish() and poll() serve the sockets without blocking, on the caller's thread.
+//   java StreamServer [balls=8] [port=7780] [budget=1400]   streams a headless game at 30 Hz
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+
+class StreamServer {
+  static final int PORT=7780;
+
+  static class Viewer {
+    SocketChannel channel;
+    SelectionKey key;
+    ByteBuffer in=ByteBuffer.allocate(256);
+    ByteBuffer out=ByteBuffer.allocate(1<<16);   // packets the socket has not taken yet
+    StreamState has=new StreamState();  // what the viewer has once it has read every packet sent
+    int acked=-1;   // last packet it acknowledged
+    int cursor=0;   // ball the next packet starts from, when comparing ball by ball
+  }
+
+  Selector selector;
+  ServerSocketChannel server;
+  List<Viewer> viewers=new ArrayList<Viewer>();
+  int budget=1400;  // bytes per packet for catching up, on top of the changes of the tick
+  int allowance;    // bytes per packet for catching up at this tick, at least the budget
+  static final int ENTRY=40;  // bytes a ball entry takes at most
+  static final int MAX=65535; // bytes a packet may take, its length is an unsigned short
+  int seq=0;
+  float width, height, hz;
+  StreamState current=new StreamState();  // the world being published
+  int[][] log=new int[StreamState.RING][0];  // slots rekeyed by each of the last RING publishes, by sequence number
+  int[] logged=new int[StreamState.RING];
+  ByteBuffer packet;
+  long bytes=0, packets=0, skipped=0;     // totals, for the statistics
+
+  StreamServer(int port, World w) throws IOException {
+    width=w.width; height=w.height; hz=w.hz;
+    selector=Selector.open();
+    server=ServerSocketChannel.open();
+    server.socket().setReuseAddress(true);
+    server.socket().bind(new InetSocketAddress(port));
+    server.configureBlocking(false);
+    server.register(selector,SelectionKey.OP_ACCEPT);
+    packet=ByteBuffer.allocate(budget+64);
+  }
+
+  void publish(World w) { // sends the state of w to every viewer
+    poll();
+    current.take(w);
+    int l=seq%StreamState.RING;
+    if (log[l].length<current.changes) log[l]=new int[current.changed.length];
+    System.arraycopy(current.changed,0,log[l],0,current.changes);
+    logged[l]=current.changes;
+    long sum=0;
+    for (int k=0; k<StreamState.RING; k++) sum+=logged[k];
+    allowance=(int)Math.min(MAX,Math.max(budget,2*ENTRY*sum/StreamState.RING));
+    for (int k=viewers.size()-1; k>=0; k--) send(viewers.get(k));
+    seq++;
+  }
+
+  void send(Viewer v) {
+    int need=Math.min(MAX,allowance+ENTRY*logged[seq%StreamState.RING])+64;  // the packet at its largest
+    if (packet.capacity()<need) packet=ByteBuffer.allocate(need);
+    if (v.out.capacity()<2*need) {ByteBuffer o=ByteBuffer.allocate(2*need); v.out.flip(); v.out=o.put(v.out);}
+    StreamState next=v.has;
+    if (v.out.position()>v.out.capacity()-need || next.seq-v.acked>=StreamState.RING) {skipped++; return;}  // not keeping up
+    ByteBuffer p=packet;
+    p.clear();
+    StreamState c=current;
+    p.putShort((short)0).put(StreamState.STATE).putInt(seq).putInt(next.seq).putInt(c.step).put((byte)c.mode);
+    next.seq=seq;
+    next.ensure(c.n);
+    for (int i=next.n; i<c.n; i++) next.clear(i);
+    StreamState.put(p,c.n); StreamState.put(p,c.points-next.points);
+    StreamState.put(p,c.sx-next.sx); StreamState.put(p,c.sy-next.sy);
+    next.step=c.step; next.mode=c.mode; next.n=c.n; next.points=c.points; next.sx=c.sx; next.sy=c.sy;
+    int from=next.complete;
+    boolean done=true;
+    if (from<0 || seq-from>StreamState.RING) {  // the log does not reach back to it: every ball is compared
+      int i=v.cursor;
+      for (int k=0; k<c.n; k++, i++) {
+        if (i>=c.n) i=0;
+        if (!entry(p,c,next,i,allowance)) {v.cursor=i; done=false; break;}  // the rest goes in the next packet
+      }
+    }
+    else
+      for (int s=from+1; s<seq && done; s++) {  // what the viewer lacks from earlier publishes
+        int[] slots=log[s%StreamState.RING];
+        for (int e=0; e<logged[s%StreamState.RING]; e++) if (!entry(p,c,next,slots[e],allowance)) {done=false; break;}
+      }
+    int[] slots=log[seq%StreamState.RING];
+    for (int e=0; e<logged[seq%StreamState.RING]; e++) if (!entry(p,c,next,slots[e],MAX)) {done=false; break;}  // the changes of this tick
+    next.complete = done ? seq : from;
+    StreamState.put(p,0);
+    p.putShort(0,(short)(p.position()-2));
+    p.flip();
+    bytes+=p.remaining(); packets++;
+    v.out.put(p);
+    flush(v);
+  }
+
+  boolean entry(ByteBuffer p, StreamState c, StreamState next, int i, int limit) { // writes what next lacks of ball i, returns false if it would take the packet past limit bytes
+    if (i>=c.n) return true;  // removed since
+    int fields=(c.sameKey(next,i) ? 0 : StreamState.KEY) | (c.c[i]!=next.c[i] ? StreamState.COLOR : 0)
+      | (Float.floatToIntBits(c.r[i])!=Float.floatToIntBits(next.r[i]) ? StreamState.RADIUS : 0);
+    if (fields==0) return true;
+    if (p.position()+ENTRY>Math.min(limit,MAX)) return false;
+    StreamState.put(p,i+1); p.put((byte)fields);
+    if ((fields&StreamState.KEY)!=0) {
+      StreamState.put(p,(int)(c.step-c.k[i]));
+      p.putFloat(c.x[i]).putFloat(c.y[i]).putFloat(c.vx[i]).putFloat(c.vy[i]).putFloat(c.g[i]);
+      next.key(i,c.k[i],c.x[i],c.y[i],c.vx[i],c.vy[i],c.g[i]);
+    }
+    if ((fields&StreamState.COLOR)!=0) {p.putInt(c.c[i]); next.c[i]=c.c[i];}
+    if ((fields&StreamState.RADIUS)!=0) {p.putFloat(c.r[i]); next.r[i]=c.r[i];}
+    return true;
+  }
+
+  void flush(Viewer v) {
+    v.out.flip();
+    try {v.channel.write(v.out);} catch (IOException e) {v.out.compact(); close(v); return;}
+    v.out.compact();
+    v.key.interestOps(SelectionKey.OP_READ|(v.out.position()>0 ? SelectionKey.OP_WRITE : 0));
+  }
+
+  void poll() { // accepts viewers, reads their acknowledgements and writes what is pending, without waiting
+    try {selector.selectNow();} catch (IOException e) {return;}
+    for (Iterator<SelectionKey> it=selector.selectedKeys().iterator(); it.hasNext();) {
+      SelectionKey k=it.next();
+      it.remove();
+      if (!k.isValid()) continue;
+      if (k.isAcceptable()) {accept(); continue;}
+      Viewer v=(Viewer)k.attachment();
+      if (k.isReadable()) read(v);
+      if (k.isValid() && k.isWritable()) flush(v);
+    }
+  }
+
+  void accept() {
+    try {
+      SocketChannel c;
+      while ((c=server.accept())!=null) {
+        c.configureBlocking(false);
+        c.socket().setTcpNoDelay(true);
+        Viewer v=new Viewer();
+        v.channel=c;
+        v.key=c.register(selector,SelectionKey.OP_READ,v);
+        v.out.putShort((short)13).put(StreamState.HELLO).putFloat(width).putFloat(height).putFloat(hz);
+        viewers.add(v);
+        flush(v);
+      }
+    } catch (IOException e) {}
+  }
+
+  void read(Viewer v) {
+    int r;
+    try {r=v.channel.read(v.in);} catch (IOException e) {r=-1;}
+    if (r<0) {close(v); return;}
+    ByteBuffer in=v.in;
+    in.flip();
+    while (in.remaining()>=2) {
+      int len=in.getShort(in.position())&0xFFFF;
+      if (len<1 || len>in.capacity()-2) {close(v); return;}
+      if (in.remaining()<2+len) break;
+      in.getShort();
+      int next=in.position()+len;
+      if (in.get()==StreamState.ACK && len==5) {
+        int a=in.getInt();
+        if (a>v.acked && a<=v.has.seq) v.acked=a;  // only states the viewer was sent
+      }
+      in.position(next);
+    }
+    in.compact();
+  }
+
+  void close(Viewer v) {
+    viewers.remove(v);
+    v.key.cancel();
+    try {v.channel.close();} catch (IOException e) {}
+  }
+
+  void close() {
+    for (int k=viewers.size()-1; k>=0; k--) close(viewers.get(k));
+    try {server.close(); selector.close();} catch (IOException e) {}
+  }
+
+  public static void main(String[] args) throws Exception {
+    int balls = args.length>0 ? Integer.parseInt(args[0]) : 8;
+    int port = args.length>1 ? Integer.parseInt(args[1]) : PORT;
+    World w=new World(600,600);
+    w.balls.clear(); w.makeBalls(balls);
+    StreamServer s=new StreamServer(port,w);
+    if (args.length>2) s.budget=Integer.parseInt(args[2]);
+    System.out.println("streaming "+balls+" balls on port "+port+", "+s.budget+" bytes per packet at most");
+    long period=Math.round(1e9/w.hz), next=System.nanoTime(), report=next+1000000000L, work=0, ticks=0, p0=0, b0=0;
+    for (long k=0; ; k++) {
+      float a=k*0.05f;
+      w.step(300+200*(float)Math.cos(a), 300+200*(float)Math.sin(a));
+      long t=System.nanoTime();
+      s.publish(w);
+      work+=System.nanoTime()-t;
+      ticks++;
+      if (t>=report) {
+        long p=s.packets-p0;
+        System.out.println(s.viewers.size()+" viewers, "+(p>0 ? (s.bytes-b0)/p : 0)+" bytes per packet, publish "+work/1000/ticks+" us per tick, "+s.skipped+" skipped");
+        p0=s.packets; b0=s.bytes; work=0; ticks=0; report+=1000000000L;
+      }
+      next+=period;
+      long sleep=next-System.nanoTime();
+      if (sleep>0) Thread.sleep(sleep/1000000,(int)(sleep%1000000));
+    }
+  }
+}
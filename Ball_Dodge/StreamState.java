@@ -0,0 +1,134 @@
+// What a spectator knows of a World. Balls are not sent as positions but as keys of their motion:
+// the step k a ball was keyed at, its position and velocity then, and its gravity. In trajectory
+// mode the key is the ball's parabola (origin, initial velocity, launch step), which the viewer
+// evaluates like World.trajectoryX/Y; otherwise it is the ball's state at step k, which the viewer
+// integrates forward like World.moveBalls. Either way the viewer computes the very floats the game
+// does, so a ball only needs a new key when its motion breaks: launch, bounce, a slot taken by
+// another ball, a change of mode. Bytes per tick follow those events, not the ball count, and
+// so does the work: take() only rekeys the slots the World listed as changed (BallStore.mark).
+// StreamServer sends each viewer the keys that differ from the state its previous packet left it
+// with, StreamClient rebuilds the same state from them and keeps the last RING states by sequence
+// number, each packet naming the one it builds on.
+// A packet is a short length, then byte STATE, int seq, int baseline seq (-1: from nothing),
+// int step, byte mode (TRAJECTORIES), then zigzag varints: ball count, points, spring x and y in
+// 1/Q pixel as deltas from the baseline, and the changed balls as varint slot+1 (0 ends the list),
+// a byte of fields present (KEY, COLOR, RADIUS), for KEY the varint age step-k and floats x, y,
+// vx, vy, gravity, for COLOR an int and for RADIUS a float. The viewer answers ACK int seq.
+
+import java.nio.ByteBuffer;
+
+class StreamState {
+  static final byte STATE=1, ACK=2, HELLO=3;  // message types, HELLO is float width, float height, float physics rate
+  static final int Q=8, RING=32;
+  static final int KEY=1, COLOR=4, RADIUS=8;  // fields of a ball entry
+  static final int TRAJECTORIES=1;            // mode flags
+  static final StreamState EMPTY=new StreamState();
+
+  int seq=-1;
+  int complete=-1;           // every change published up to this sequence number is in this state, -1 if not known
+  int step=0, mode=0;
+  int n=0, points=0, sx=0, sy=0;
+  long[] k=new long[0];      // step each ball was keyed at
+  float[] x=new float[0], y=new float[0], vx=new float[0], vy=new float[0], g=new float[0];  // its state then
+  int[] c=new int[0];
+  float[] r=new float[0];
+  int[] changed=new int[0];  // slots keyed by the last take()
+  int changes=0;
+
+  void ensure(int cap) {
+    if (x.length>=cap) return;
+    cap=Math.max(cap,2*x.length);
+    k=java.util.Arrays.copyOf(k,cap);
+    x=java.util.Arrays.copyOf(x,cap); y=java.util.Arrays.copyOf(y,cap);
+    vx=java.util.Arrays.copyOf(vx,cap); vy=java.util.Arrays.copyOf(vy,cap); g=java.util.Arrays.copyOf(g,cap);
+    c=java.util.Arrays.copyOf(c,cap); r=java.util.Arrays.copyOf(r,cap);
+  }
+
+  void copy(StreamState o) { // becomes o, except for its sequence number
+    ensure(o.n);
+    complete=o.complete; step=o.step; mode=o.mode; n=o.n; points=o.points; sx=o.sx; sy=o.sy;
+    System.arraycopy(o.k,0,k,0,n);
+    System.arraycopy(o.x,0,x,0,n); System.arraycopy(o.y,0,y,0,n);
+    System.arraycopy(o.vx,0,vx,0,n); System.arraycopy(o.vy,0,vy,0,n); System.arraycopy(o.g,0,g,0,n);
+    System.arraycopy(o.c,0,c,0,n); System.arraycopy(o.r,0,r,0,n);
+  }
+
+  void clear(int i) {k[i]=-1; x[i]=y[i]=vx[i]=vy[i]=g[i]=r[i]=0; c[i]=0;}  // a ball the viewer has not seen yet
+
+  void key(int i, long pk, float px, float py, float pvx, float pvy, float pg) {k[i]=pk; x[i]=px; y[i]=py; vx[i]=pvx; vy[i]=pvy; g[i]=pg;}
+
+  boolean sameKey(StreamState o, int i) {
+    return k[i]==o.k[i] && Float.floatToIntBits(x[i])==Float.floatToIntBits(o.x[i]) && Float.floatToIntBits(y[i])==Float.floatToIntBits(o.y[i])
+      && Float.floatToIntBits(vx[i])==Float.floatToIntBits(o.vx[i]) && Float.floatToIntBits(vy[i])==Float.floatToIntBits(o.vy[i])
+      && Float.floatToIntBits(g[i])==Float.floatToIntBits(o.g[i]);
+  }
+
+  void take(World w) { // keys the balls of w changed since the last take: trajectories as they are, integrated balls at their state now
+    BallStore b=w.balls;
+    ensure(b.n);
+    int m = w.trajectories ? TRAJECTORIES : 0;
+    if (m!=mode) b.markAll();              // every key changes meaning
+    for (int i=n; i<b.n; i++) b.mark(i);   // slots this state has not seen, as when it is first taken
+    step=(int)w.frames; mode=m; n=b.n; points=w.points;
+    sx=Math.round(w.springs[0].tempxpos*Q); sy=Math.round(w.springs[0].tempypos*Q);
+    int count=b.changes.get();
+    if (changed.length<count) changed=new int[b.capacity()];
+    changes=0;
+    for (int e=0; e<count; e++) {
+      int i=b.changed[e];
+      b.marked[i]=false;
+      if (i>=n) continue;  // removed since
+      changed[changes++]=i;
+      c[i]=b.c[i]; r[i]=b.r[i];
+      if (mode==TRAJECTORIES) key(i,b.lt[i],b.ox[i],b.oy[i],b.ovx[i],b.ovy[i],b.gy[i]);
+      else key(i,step,b.x[i],b.y[i],b.vx[i],b.vy[i],b.gy[i]);
+    }
+    b.changes.set(0);
+  }
+
+  static void advance(BallStore b, int i, long steps, float t) { // integrates ball i as World.moveBalls does, the same floats in the same order
+    for (long s=0; s<steps; s++) {
+      b.vy[i] = b.vy[i]+t*(b.gy[i]);
+      b.x[i] = b.x[i]+t*(b.vx[i]);
+      b.y[i] = b.y[i]+(1.f/2)*(b.gy[i])*(t*t)+t*(b.vy[i]);
+    }
+  }
+
+  void show(World w) { // makes w show this state, the previous one becoming what its rendering interpolates from
+    BallStore b=w.balls;
+    if (b.capacity()<n) b.grow(n);
+    float t=w.dt;
+    boolean traj = mode==TRAJECTORIES;
+    for (int i=0; i<n; i++) {
+      boolean fresh = i>=b.n || b.lt[i]!=k[i] || b.ox[i]!=x[i] || b.oy[i]!=y[i] || b.ovx[i]!=vx[i] || b.ovy[i]!=vy[i] || b.gy[i]!=g[i] || w.trajectories!=traj;
+      b.px[i]=b.x[i]; b.py[i]=b.y[i];
+      if (fresh) {  // a new key: the ball starts from it
+        b.lt[i]=k[i]; b.ox[i]=x[i]; b.oy[i]=y[i]; b.ovx[i]=vx[i]; b.ovy[i]=vy[i]; b.gy[i]=g[i];
+        if (!traj) {b.x[i]=x[i]; b.y[i]=y[i]; b.vx[i]=vx[i]; b.vy[i]=vy[i]; advance(b,i,step-k[i],t);}
+      }
+      else if (!traj) advance(b,i,step-w.frames,t);
+      if (traj) {float tau=(step-k[i])*t; b.x[i]=x[i]+vx[i]*tau; b.y[i]=y[i]+vy[i]*tau+.5f*g[i]*tau*tau;}
+      if (i>=b.n) {b.px[i]=b.x[i]; b.py[i]=b.y[i];}  // new balls do not fly in from the corner
+      b.c[i]=c[i]; b.r[i]=r[i];
+    }
+    b.n=n;
+    w.trajectories=traj;
+    Spring s=w.springs[0];
+    s.prevxpos=s.tempxpos; s.prevypos=s.tempypos;
+    s.tempxpos=sx/(float)Q; s.tempypos=sy/(float)Q;
+    w.points=points;
+    w.frames=step;
+  }
+
+  static void put(ByteBuffer b, int v) { // zigzag varint
+    int z=(v<<1)^(v>>31);
+    while ((z&~0x7F)!=0) {b.put((byte)((z&0x7F)|0x80)); z>>>=7;}
+    b.put((byte)z);
+  }
+
+  static int get(ByteBuffer b) {
+    int z=0, shift=0, v;
+    do {v=b.get(); z|=(v&0x7F)<<shift; shift+=7;} while ((v&0x80)!=0);
+    return (z>>>1)^-(z&1);
+  }
+}
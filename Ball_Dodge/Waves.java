@@ -0,0 +1,78 @@
+// Data-driven ball spawner: patterns read from a text file (see data/waves.txt) launch balls from
+// a corner or any point at a fixed cadence, each ball is retired after respawn seconds of flight.
+// Balls come from the preallocated BallStore and go back to it, so nothing is allocated in play.
+
+import java.io.*;
+
+class Waves {
+  static final int POINT=0, LEFT=1, RIGHT=2, ALTERNATE=3;  // origins
+  static final String DEFAULT="0 0 0.5 LR 25 300";        // the classic game: one ball every half second from alternating corners
+
+  String source;          // text the patterns were read from, kept for input logs
+  int entries=0;
+  float[] start, cadence, radius, gravity, ox, oy;
+  int[] count, origin;
+  long[] spawned;         // balls launched so far by each pattern
+
+  Waves(String text) {
+    source=text;
+    String[] lines=text.split("\n");
+    start=new float[lines.length]; cadence=new float[lines.length]; radius=new float[lines.length];
+    gravity=new float[lines.length]; ox=new float[lines.length]; oy=new float[lines.length];
+    count=new int[lines.length]; origin=new int[lines.length]; spawned=new long[lines.length];
+    for (String line : lines) {
+      line=line.trim();
+      if (line.length()==0 || line.startsWith("#")) continue;
+      String[] t=line.split("\\s+");
+      if (t.length<6) throw new IllegalArgumentException("wave pattern needs 6 fields: "+line);
+      int e=entries++;
+      start[e]=Float.parseFloat(t[0]); count[e]=Integer.parseInt(t[1]); cadence[e]=Float.parseFloat(t[2]);
+      radius[e]=Float.parseFloat(t[4]); gravity[e]=Float.parseFloat(t[5]);
+      if (cadence[e]<=0) throw new IllegalArgumentException("wave cadence must be positive: "+line);
+      if (t[3].equals("L")) origin[e]=LEFT;
+      else if (t[3].equals("R")) origin[e]=RIGHT;
+      else if (t[3].equals("LR")) origin[e]=ALTERNATE;
+      else {
+        String[] xy=t[3].split(",");
+        origin[e]=POINT; ox[e]=Float.parseFloat(xy[0]); oy[e]=Float.parseFloat(xy[1]);
+      }
+    }
+  }
+
+  static Waves load(String path) throws IOException { // reads patterns from a file
+    BufferedReader in=new BufferedReader(new FileReader(path));
+    StringBuilder s=new StringBuilder();
+    try {for (String line=in.readLine(); line!=null; line=in.readLine()) s.append(line).append('\n');}
+    finally {in.close();}
+    return new Waves(s.toString());
+  }
+
+  int capacity(World w) { // most balls that can be in flight at once
+    int n=0;
+    for (int e=0; e<entries; e++) {
+      int live=(int)Math.ceil(w.respawn/cadence[e])+1;
+      n+=count[e]>0 ? Math.min(count[e],live) : live;
+    }
+    return n;
+  }
+
+  void reset() {java.util.Arrays.fill(spawned,0);}
+
+  void update(World w) { // retires balls whose flight is over and launches the balls due by the end of this step
+    BallStore b=w.balls;
+    for (int i=b.n-1; i>=0; i--) if (b.f[i]>=w.respawnSteps) b.remove(i);
+    long now=w.frames+1;
+    int first=b.n;  // balls launched from here on form this step's volley
+    for (int e=0; e<entries; e++)
+      while ((count[e]==0 || spawned[e]<count[e]) && Math.round((start[e]+spawned[e]*cadence[e])*w.hz)<=now) {
+        float x=ox[e], y=oy[e];
+        int o=origin[e]==ALTERNATE ? (spawned[e]%2==0 ? LEFT : RIGHT) : origin[e];
+        if (o==LEFT) {x=w.lx; y=w.ly;}
+        if (o==RIGHT) {x=w.rx; y=w.ry;}
+        b.add(x,y,gravity[e],radius[e],World.magenta,0);
+        spawned[e]++;
+      }
+    Aim.aim(b.hx,b.hy,b.gy,first,b.n,w.tx,w.ty,w.flight,b.vx,b.vy);  // the whole volley in one pass
+    for (int i=first; i<b.n; i++) w.launch(i,now);
+  }
+}
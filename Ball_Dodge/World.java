@@ -0,0 +1,282 @@
+// Headless game world: balls, player spring and hit counter, stepped without a window.
+// The sketch only renders its state; main() steps it at full CPU speed for load tests.
+
+class World {
+  static final int magenta=0xffFF79FD, black=0xff000000; // ball colors when flying and when hitting the player
+
+  float width, height;  // size of the playing field
+  float gx=0, gy=300;   // constant acceleration
+  float r=25;           // ball radius
+  float hz=30, dt=1.f/30;  // physics rate and fixed step, independent of the display rate
+  float flight=2;          // seconds a ball takes to reach its target
+  float lead=.3f;          // seconds the player keeps moving the way the mouse goes, in predictions
+  float respawn=4;         // seconds between two launches of the same ball
+  float stagger=0.5f;      // seconds between the first launches of consecutive balls
+  int respawnSteps=120;    // respawn in steps
+  float lx, ly, rx, ry; // left and right corner starting positions for balls
+
+  Spring[] springs = new Spring[1];
+  SoftBody body; // when set, the player is this soft body following the spring, and its hull is what balls hit
+  BallStore balls = new BallStore(8); // table of balls
+  int points=0; // tracks how many time your face was slapped by a flying ball
+  boolean ballCollisions=false; // when true balls also bounce off each other
+  boolean trajectories=false;   // when true ball positions are evaluated on their parabola instead of integrated
+  boolean continuous=false;     // when true hits are found by sweeping balls and player's disk over each step, a soft body is still tested once per step
+  ContinuousCollisions ccd;     // continuous collision state, built when first needed
+  Waves waves;                  // when set, balls are spawned from its patterns and retired after their flight instead of relaunched
+  Grid grid;     // broad phase for ball-ball collisions
+  ParallelStepper parallel; // when set, balls are moved and tested against the player on all cores
+  int parallelMin=4096;     // fewer balls than this are not worth splitting
+  Profiler prof;            // when set, each step charges its phases to it
+  int[] launches=new int[8];  // balls relaunched in this step, each chunk of moveBalls uses the slots of its own balls
+  byte[] touch=new byte[8]; // per ball: NEAR, FAR or neither, from the last collision test
+  static final byte NEAR=1, FAR=2;
+  long frames=0; // number of steps taken
+  float tx, ty;  // target predicted for balls launched in this step
+
+  World(float w, float h) {this(w,h,30);}
+
+  World(float w, float h, float physicsHz) {
+    width=w; height=h;
+    hz=physicsHz; dt=1.f/hz;
+    respawnSteps=Math.round(respawn*hz);
+    lx=0; ly=height; 
+    rx=width; ry=height; 
+    makeBalls(8);
+    springs[0] = new Spring(300, 300, 50, 0.95f, 40, 0.1f, 0, 0, springs, 0, false);
+  }
+
+  void makeBalls(int count) {
+    int s=Math.round(stagger*hz);
+    for (int i=0; i<count; i++) { // alternates between the left and right corners, launched stagger seconds apart
+      int k = i%2==0 ? balls.add(lx,ly,gy,r,magenta,(s*i)%respawnSteps) : balls.add(rx,ry,gy,r,magenta,(s*i)%respawnSteps);
+      balls.lt[k]=frames;
+    }
+  }
+
+  void setWaves(Waves w) { // replaces the balls by the ones the patterns of w spawn, null for the classic relaunching balls
+    waves=w;
+    balls.clear();
+    if (w==null) {makeBalls(8); return;}
+    w.reset();
+    int c=w.capacity(this);
+    if (balls.capacity()<c) balls.grow(c);  // the pool, nothing is allocated while playing
+  }
+
+  void step(float mx, float my) {step(mx,my,0,0);} // a mouse whose velocity is unknown
+
+  void step(float mx, float my, float mvx, float mvy) { // advances the world by one fixed step dt with the mouse at (mx,my) moving at (mvx,mvy) pixels per second
+    springs[0].update(mx,my,30/hz);  // the spring constants are tuned per 1/30 s frame
+    if (body!=null) body.step(springs[0].tempxpos,springs[0].tempypos,dt,parallel);
+    if (prof!=null) prof.mark(Profiler.SPRING);
+    predict(mx,my,mvx,mvy);  // where balls launched in this step are aimed
+    moveBalls();  // updates the position and velocity of balls
+    if (waves!=null) waves.update(this);  // retires finished balls and launches new ones
+    if (prof!=null) prof.mark(Profiler.MOVE);
+    if (ballCollisions) collideBalls();  // bounces balls off each other
+    if (prof!=null) prof.mark(Profiler.BOUNCE);
+    if (continuous && body==null) {   // exact contacts between steps, each counted once
+      if (ccd==null) ccd=new ContinuousCollisions(this);
+      ccd.process();
+    }
+    else processCollisions();  // detects collisions, processes them, and keeps track of how many times the player's face was hit; the hull bends within a step, so it is not swept
+    if (prof!=null) prof.mark(Profiler.COLLIDE);
+    frames++;
+  }
+
+  void setBody(int nodes) { // makes the player a soft body with rings of that many nodes around the spring, none for the disk
+    Spring s=springs[0];
+    body = nodes>0 ? new SoftBody(nodes,s.size/2,8,s.tempxpos,s.tempypos) : null;
+    ccd=null;  // the wheel is not kept while the body is tested instead
+  }
+
+  boolean inParallel() {return parallel!=null && balls.n>=parallelMin;}
+
+  void moveBalls() {
+    if (launches.length<balls.capacity()) launches=new int[balls.capacity()];
+    if (inParallel()) parallel.run(ParallelStepper.MOVE); else moveBalls(0,balls.n);
+  }
+
+  void moveBalls(int from, int to) { // moves balls from..to-1, independent of all other balls
+    float t=dt;
+    BallStore b=balls;
+    float[] x=b.x, y=b.y, vx=b.vx, vy=b.vy, gy=b.gy, px=b.px, py=b.py;
+    int[] f=b.f;
+    int n=from;  // relaunched balls go to launches[from..n-1]
+    for (int i=from; i<to; i++) {
+      f[i]++; 
+      if (f[i]>=respawnSteps && waves!=null) continue; // flight over, the spawner retires it
+      if (f[i]>=respawnSteps) { // relaunches the ball from its home, aimed with the rest of the volley below
+        x[i]=b.hx[i]; y[i]=b.hy[i]; 
+        px[i]=x[i]; py[i]=y[i]; // no interpolation across the jump home
+        launches[n++]=i;
+        f[i]=0;
+        continue;
+      } 
+      px[i]=x[i]; py[i]=y[i];
+      if (trajectories) { // evaluated at the end of this step, no drift accumulates
+        float tau=(frames+1-b.lt[i])*t;
+        x[i]=b.ox[i]+b.ovx[i]*tau;
+        y[i]=b.oy[i]+b.ovy[i]*tau+.5f*gy[i]*tau*tau;
+        vx[i]=b.ovx[i]; vy[i]=b.ovy[i]+gy[i]*tau;
+        continue;
+      }
+      vy[i] = vy[i]+t*(gy[i]);
+      x[i] = x[i]+t*(vx[i]);
+      y[i] = y[i]+(1.f/2)*(gy[i])*(t*t)+t*(vy[i]);
+    }
+    Aim.aim(launches,from,n,b.hx,b.hy,gy,tx,ty,flight,vx,vy);
+    for (int e=from; e<n; e++) launch(launches[e],frames+1);
+  }
+
+  void launch(int i, long step) { // starts a new trajectory of ball i from its current position and velocity, taken as its state at time step*dt
+    BallStore b=balls;
+    b.ox[i]=b.x[i]; b.oy[i]=b.y[i]; b.ovx[i]=b.vx[i]; b.ovy[i]=b.vy[i]; b.lt[i]=step;
+    b.mark(i);
+  }
+
+  void setTrajectories(boolean on) { // switches modes, trajectories continue from the current state
+    if (on && !trajectories) for (int i=0; i<balls.n; i++) launch(i,frames);
+    trajectories=on;
+  }
+
+  void setContinuous(boolean on) { // switches modes, a wheel left from an earlier continuous stretch went stale meanwhile
+    if (on && !continuous) ccd=null;
+    continuous=on;
+  }
+
+  // x of ball i steps and a fraction a of a step after its current trajectory started; counting from the launch,
+  // not from the start of the game, keeps the fraction from drowning in the float seconds of a long session
+  float trajectoryX(int i, long steps, float a) {float tau=Math.max(0,(steps+a)*dt); return balls.ox[i]+balls.ovx[i]*tau;}
+  float trajectoryY(int i, long steps, float a) {float tau=Math.max(0,(steps+a)*dt); return balls.oy[i]+balls.ovy[i]*tau+.5f*balls.gy[i]*tau*tau;}
+
+  float ballX(int i, float a) { // x of ball i to draw a fraction a of a step past the previous step
+    if (trajectories) return trajectoryX(i,frames-1-balls.lt[i],a);
+    return balls.px[i]+(balls.x[i]-balls.px[i])*a;
+  }
+  float ballY(int i, float a) {
+    if (trajectories) return trajectoryY(i,frames-1-balls.lt[i],a);
+    return balls.py[i]+(balls.y[i]-balls.py[i])*a;
+  }
+
+  void predict(float mx, float my) {predict(mx,my,0,0);}
+
+  void predict(float mx, float my, float mvx, float mvy) {  // predicts where the target will be in flight seconds: the mouse keeps drifting with a velocity that fades over lead seconds
+    float d=lead*(1-(float)Math.exp(-flight/lead));  // distance covered per unit of initial velocity
+    tx=Math.max(Math.min(0,mx),Math.min(Math.max(width,mx),mx+mvx*d));  // the drift stays on the field, or where the mouse already is if it left it
+    ty=Math.max(Math.min(0,my),Math.min(Math.max(height,my),my+mvy*d));
+  } 
+
+  void aim(int i, float tx, float ty) {  // sets initial velocity of ball i to reach target T from its home assuming constant acceleration G in exactly flight seconds
+    BallStore b=balls;
+    Aim.aim(b.hx,b.hy,b.gy,i,i+1,tx,ty,flight,b.vx,b.vy);
+  }
+
+  void processCollisions() { // detects collisions and increments points each time the player collides with a ball (avoids double counting)
+    if (touch.length<balls.capacity()) touch=new byte[balls.capacity()];
+    if (inParallel()) parallel.run(ParallelStepper.TOUCH); else touchPlayer(0,balls.n);
+    Spring s = springs[0];
+    BallStore b=balls;
+    byte[] t=touch;
+    for (int i=0; i<b.n; i++) { // the player's collide flag depends on the balls before, so hits are counted in order
+      if (t[i]==NEAR && s.collide != true && b.collide[i] != true) {
+        points++;
+        s.collide = true;
+        b.collide[i] = true;
+        b.color(i,black);
+      }
+      if (t[i]==FAR) {
+        s.collide = false;
+        b.collide[i] = false;
+        b.color(i,magenta);
+      }
+    }
+    if (body!=null) body.dent(b,t);
+  }
+
+  void touchPlayer(int from, int to) { // classifies balls from..to-1 as touching the player (NEAR), clear of it (FAR) or exactly grazing it
+    if (body!=null) {body.touch(balls,touch,from,to); return;}
+    Spring s = springs[0];
+    BallStore b=balls;
+    byte[] t=touch;
+    for (int i=from; i<to; i++) {
+      float d = (float)Math.sqrt(sq(s.tempxpos-b.x[i])+sq(s.tempypos-b.y[i]));
+      t[i] = d < b.r[i]*2 ? NEAR : d > b.r[i]*2 ? FAR : 0;
+    }
+  }
+
+  void collideBalls() { // elastic bounces between touching balls, candidates found through the grid
+    BallStore b=balls;
+    float rmax=r;  // patterns give balls radii of their own, cells must hold the largest
+    for (int i=0; i<b.n; i++) rmax=Math.max(rmax,b.r[i]);
+    if (grid==null || grid.cell<2*rmax) grid=new Grid(width,height,2*rmax);
+    grid.build(b);
+    Grid g=grid;
+    float[] x=b.x, y=b.y, vx=b.vx, vy=b.vy, rr=b.r, m=b.m;
+    for (int i=0; i<b.n; i++) {
+      int ci=g.cellOf[i], col=ci%g.cols, row=ci/g.cols;
+      for (int rj=Math.max(row-1,0); rj<=Math.min(row+1,g.rows-1); rj++)
+        for (int cj=Math.max(col-1,0); cj<=Math.min(col+1,g.cols-1); cj++) {
+          int k=rj*g.cols+cj;
+          for (int e=g.start[k]; e<g.start[k+1]; e++) {
+            int j=g.items[e];
+            if (j<=i) continue; // each pair once
+            float dx=x[j]-x[i], dy=y[j]-y[i], d2=dx*dx+dy*dy, rs=rr[i]+rr[j];
+            if (d2>=rs*rs || d2==0) continue;
+            float d=(float)Math.sqrt(d2), nx=dx/d, ny=dy/d;
+            float wi=1/m[i], wj=1/m[j], w=wi+wj;
+            float push=(rs-d)/w;  // separates the balls in proportion to their inverse masses
+            x[i]-=push*wi*nx; y[i]-=push*wi*ny; x[j]+=push*wj*nx; y[j]+=push*wj*ny;
+            b.mark(i); b.mark(j);
+            float vn=(vx[j]-vx[i])*nx+(vy[j]-vy[i])*ny;
+            if (vn>=0) continue; // already separating
+            float p=-2*vn/w;      // elastic impulse
+            vx[i]-=p*wi*nx; vy[i]-=p*wi*ny; vx[j]+=p*wj*nx; vy[j]+=p*wj*ny;
+            if (trajectories) {launch(i,frames+1); launch(j,frames+1);} // the bounce starts new parabolas
+          }
+        }
+    }
+  }
+
+  long checksum() { // FNV-1a hash of the whole simulated state, to tell whether two runs ended identically
+    long h=0xcbf29ce484222325L;
+    BallStore b=balls;
+    for (int i=0; i<b.n; i++) {
+      h=mix(h,Float.floatToIntBits(b.x[i])); h=mix(h,Float.floatToIntBits(b.y[i]));
+      h=mix(h,Float.floatToIntBits(b.vx[i])); h=mix(h,Float.floatToIntBits(b.vy[i]));
+      h=mix(h,b.f[i]); h=mix(h,b.c[i]);
+    }
+    Spring s=springs[0];
+    h=mix(h,Float.floatToIntBits(s.tempxpos)); h=mix(h,Float.floatToIntBits(s.tempypos));
+    h=mix(h,Float.floatToIntBits(s.velx)); h=mix(h,Float.floatToIntBits(s.vely));
+    if (body!=null) for (int i=0; i<2*body.n; i++) {h=mix(h,Float.floatToIntBits(body.x[i])); h=mix(h,Float.floatToIntBits(body.y[i]));}
+    h=mix(h,points); h=mix(h,(int)frames);
+    return h;
+  }
+
+  static long mix(long h, int v) {for (int k=0; k<4; k++) {h^=(v>>>(8*k))&0xFF; h*=0x100000001b3L;} return h;}
+
+  static float sq(float a) {return a*a;}
+
+  public static void main(String[] args) throws java.io.IOException { // steps a world headless at full speed: java World [frames] [balls] [bounce] [trajectories] [continuous] [parallel] [body=nodes] [waves.txt]
+    long n = args.length>0 ? Long.parseLong(args[0]) : 10000000L;
+    World w = new World(600,600);
+    if (args.length>1) {w.balls.clear(); w.makeBalls(Integer.parseInt(args[1]));}
+    for (int k=2; k<args.length; k++) {
+      if (args[k].equals("bounce")) w.ballCollisions=true;
+      if (args[k].equals("trajectories")) w.setTrajectories(true);
+      if (args[k].equals("continuous")) w.setContinuous(true);
+      if (args[k].endsWith(".txt")) w.setWaves(Waves.load(args[k]));
+      if (args[k].equals("parallel")) w.parallel=new ParallelStepper(w,Runtime.getRuntime().availableProcessors());
+      if (args[k].startsWith("body=")) w.setBody(Integer.parseInt(args[k].substring(5)));
+    }
+    long t0 = System.nanoTime();
+    for (long k=0; k<n; k++) {
+      float a = k*0.05f;
+      w.step(300+200*(float)Math.cos(a), 300+200*(float)Math.sin(a)); // mouse circling the screen center
+    }
+    double s = (System.nanoTime()-t0)*1e-9;
+    System.out.println(n+" frames in "+(float)s+" s, "+(long)(n/s)+" frames/s, "+w.points+" hits");
+    if (w.parallel!=null) w.parallel.shutdown();
+  }
+}
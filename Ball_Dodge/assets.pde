@@ -0,0 +1,50 @@
+// Fonts and pictures are loaded on background threads, both at once, so that setup() returns
+// at once and the game is playable from the first frame. Until they arrive the background is a
+// plain placeholder and the HUD is not drawn; draw() installs each as soon as it is ready.
+// The picture comes decoded and scaled to the screen from the cache in the sketch's cache folder
+// when it can; the cache is kept out of data so that it is not exported with the applet.
+
+volatile PFont loadedFont; // set by the loader threads, installed by installAssets()
+volatile PImage loadedPic;
+
+void loadAssets() { // starts loading the font and the picture, and puts a placeholder in the picture's place
+  pic = createImage(width,height,RGB);
+  pic.loadPixels();
+  java.util.Arrays.fill(pic.pixels,plain);
+  pic.updatePixels();
+  placePoints();
+  new Thread(new Runnable() {public void run() {
+    loadedFont = loadFont("AppleCasual-36.vlw");
+  }}, "font loader").start();
+  new Thread(new Runnable() {public void run() {
+    try {loadedPic = loadPic("pic.jpg");} catch (IOException e) {println("cannot load picture, keeping the placeholder: "+e);}
+  }}, "picture loader").start();
+}
+
+PImage loadPic(String name) throws IOException { // the picture in the data folder, scaled to the screen
+  ImageCache cache = new ImageCache(new File(sketchPath("cache")));
+  int[] p = cache.load(new File(dataPath(name)),width,height);
+  PImage img = new PImage(width,height,RGB);
+  System.arraycopy(p,0,img.pixels,0,p.length);
+  img.updatePixels();
+  return img;
+}
+
+void installAssets() { // takes whatever finished loading since the last frame
+  if (hud==null && loadedFont!=null) {
+    textFont(loadedFont, 36);
+    hud = new Hud(loadedFont,width,100);  // text is rendered once into its own layer
+    fullRedraw = true;
+  }
+  if (loadedPic!=null && pic!=loadedPic) {
+    pic = loadedPic;
+    picImage = null;  // the AWT copy of the old picture
+    placePoints();
+    fullRedraw = true;
+  }
+}
+
+void placePoints() { // points that depend on the size of the picture
+  C=P(pic.width/2,pic.height/2);
+  B=P(pic.width/2,pic.height*0.9);
+}
@@ -0,0 +1,80 @@
+// Dirty-rectangle rendering: instead of copying the whole background every frame, only the
+// areas covered by the balls and the spring in the last frame or this one, and by text that
+// changed, are restored from the background and redrawn. Falls back to a full redraw when the
+// dirty area gets large, after overlays, and on the first frame.
+
+boolean dirtyRendering=true; // restores only the changed regions of the background
+float dirtyMax=0.4;          // fraction of the screen beyond which a full redraw is cheaper
+boolean fullRedraw=true;     // forces the next frame to redraw everything
+boolean pictureBackground=true; // draws the picture behind the game, or a plain color when the governor is short of time
+color plain=#EBEBEB;         // the plain background, also shown until the picture is loaded
+Rects drawn = new Rects(), next = new Rects(), dirty = new Rects(); // areas painted last frame, painted this frame, to restore
+Rects changed = new Rects(); // areas whose content changed this frame, such as the HUD
+java.awt.Image picImage;     // the background as an AWT image, to blit regions of it
+
+class Rects { // list of axis aligned rectangles clipped to the screen
+  float[] x0=new float[64], y0=new float[64], x1=new float[64], y1=new float[64];
+  int n=0;
+  float area=0; // sum of the areas, overlaps counted twice
+
+  void clear() {n=0; area=0;}
+
+  void add(float ax, float ay, float bx, float by) {
+    ax=max(ax,0); ay=max(ay,0); bx=min(bx,width); by=min(by,height);
+    if (ax>=bx || ay>=by) return;
+    if (n==x0.length) {x0=expand(x0); y0=expand(y0); x1=expand(x1); y1=expand(y1);}
+    x0[n]=ax; y0[n]=ay; x1[n]=bx; y1[n]=by; n++;
+    area+=(bx-ax)*(by-ay);
+  }
+
+  void add(Rects o) {for (int k=0; k<o.n; k++) add(o.x0[k],o.y0[k],o.x1[k],o.y1[k]);}
+
+  boolean hits(float ax, float ay, float bx, float by) {
+    for (int k=0; k<n; k++) if (ax<x1[k] && x0[k]<bx && ay<y1[k] && y0[k]<by) return true;
+    return false;
+  }
+}
+
+boolean restoreDirty(float a) { // restores the regions that change this frame and returns true, or false if the whole frame must be redrawn
+  next.clear();
+  Spring s = world.springs[0];
+  float sx=lerp(s.prevxpos,s.tempxpos,a), sy=lerp(s.prevypos,s.tempypos,a), sr=s.size/2.+1;
+  next.add(sx-sr,sy-sr,sx+sr,sy+sr);
+  SoftBody sb = world.body;
+  if (sb!=null) next.add(sb.minx-2,sb.miny-2,sb.maxx+2,sb.maxy+2);  // the hull between this step and the previous one
+  BallStore b = world.balls;
+  for (int i=0; i<b.n; i++) {
+    float x=world.ballX(i,a), y=world.ballY(i,a), r=b.r[i]+2; // sprites have a pixel of margin
+    next.add(x-r,y-r,x+r,y+r);
+  }
+  dirty.clear();
+  dirty.add(drawn);
+  dirty.add(next);
+  dirty.add(changed);
+  changed.clear();
+  Rects t=drawn; drawn=next; next=t;
+  boolean partial = dirtyRendering && !fullRedraw && !showProfile && pic.width==width && pic.height==height 
+                    && dirty.area<dirtyMax*width*height;
+  fullRedraw=false;
+  if (!partial) return false;
+  if (!pictureBackground) {
+    fill(plain);
+    for (int k=0; k<dirty.n; k++) rect(dirty.x0[k],dirty.y0[k],dirty.x1[k]-dirty.x0[k],dirty.y1[k]-dirty.y0[k]);
+    return true;
+  }
+  if (picImage==null) picImage=pic.getImage();
+  if (g instanceof PGraphicsJava2D) {
+    java.awt.Graphics2D g2 = ((PGraphicsJava2D)g).g2;
+    for (int k=0; k<dirty.n; k++) {
+      int ax=floor(dirty.x0[k]), ay=floor(dirty.y0[k]), bx=ceil(dirty.x1[k]), by=ceil(dirty.y1[k]);
+      g2.drawImage(picImage,ax,ay,bx,by,ax,ay,bx,by,null);
+    }
+  }
+  else for (int k=0; k<dirty.n; k++) {
+    int ax=floor(dirty.x0[k]), ay=floor(dirty.y0[k]), bx=ceil(dirty.x1[k]), by=ceil(dirty.y1[k]);
+    copy(pic,ax,ay,bx-ax,by-ay,ax,ay,bx-ax,by-ay);
+  }
+  return true;
+}
+
+void showBackground() {if (pictureBackground) background(pic); else background(plain);}
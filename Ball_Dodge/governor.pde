@@ -0,0 +1,46 @@
+// Frame governor: the work time of every frame goes to a Governor, which lowers the level of detail
+// when frames run late on a slow machine and restores it, or raises the frame rate, when there is
+// time to spare. Levels drop smoothing, then draw disks as coarse polygons, then restore a plain
+// background instead of the picture. Balls drawn from cached sprites are blitted whatever the
+// smoothing and the disk detail, so with sprites on the governor goes straight to the plain background.
+
+Governor governor; // level of detail and frame rate, decided from the frame times
+boolean governing=true; // lets the governor change them
+int diskDetail=0; // sides of the polygons drawn for disks, 0 draws true ellipses
+float[] diskCos, diskSin; // unit circle at diskDetail sides
+
+void govern(long work) { // files the work time of this frame and applies what the governor decides
+  if (governing && governor.frame(work)) applyLevel();
+}
+
+void applyLevel() {
+  int l=governor.level;
+  if (l>=Governor.NO_SMOOTH) noSmooth(); else smooth();
+  diskDetail = l>=Governor.COARSE ? 12 : 0;
+  pictureBackground = l<Governor.PLAIN;
+  frameRate(governor.hz);
+  fullRedraw=true;
+}
+
+void fitLevels() { // skips the levels that only reach disks drawn one by one when balls are sprites
+  boolean moved = governor.skip(Governor.NO_SMOOTH,batchedBalls);
+  moved |= governor.skip(Governor.COARSE,batchedBalls);
+  if (moved) applyLevel();
+}
+
+void toggleGoverning() {
+  governing=!governing;
+  governor.reset();
+  applyLevel();
+}
+
+void disk(float x, float y, float r) { // filled circle, a polygon of diskDetail sides when the governor asks for less detail
+  if (diskDetail<3) {ellipse(x,y,2*r,2*r); return;}
+  if (diskCos==null || diskCos.length!=diskDetail) {
+    diskCos=new float[diskDetail]; diskSin=new float[diskDetail];
+    for (int k=0; k<diskDetail; k++) {diskCos[k]=cos(TWO_PI*k/diskDetail); diskSin[k]=sin(TWO_PI*k/diskDetail);}
+  }
+  beginShape();
+  for (int k=0; k<diskDetail; k++) vertex(x+r*diskCos[k],y+r*diskSin[k]);
+  endShape(CLOSE);
+}
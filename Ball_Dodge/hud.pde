@@ -0,0 +1,54 @@
+// Text overlay rendered once into an off-screen layer and only re-rendered when the score changes;
+// every frame just blits the layer, or the parts of it under restored dirty regions.
+
+Hud hud; // the score and the author names
+
+class Hud {
+  PGraphics layer;                 // transparent, holds the rasterized text
+  PFont font;
+  char[] score = new char[16];     // score text, formatted without creating Strings
+  int scoreLength=0;
+  int shownPoints=-1;              // points rendered into the layer
+  float w, h;                      // size of the layer, drawn at the top left corner
+
+  Hud(PFont pfont, float pw, float ph) {
+    font=pfont; w=pw; h=ph;
+    layer=createGraphics((int)w,(int)h,JAVA2D);
+  }
+
+  boolean update(int points) { // re-renders the layer if points changed, returns true if it did
+    if (points==shownPoints) return false;
+    shownPoints=points;
+    formatScore(points);
+    layer.beginDraw();
+    layer.background(0,0);
+    layer.smooth();
+    layer.textFont(font,36);
+    layer.fill(red);
+    layer.text(score,0,scoreLength,20,40); // prints game status: change this as desired
+    layer.fill(0);
+    layer.text("Hannah Yu", 420, 40);
+    layer.text("(and Rylai)", 420, 80);
+    layer.endDraw();
+    return true;
+  }
+
+  void formatScore(int v) { // same as Format0(v,3)+" hits", into the reusable buffer
+    int digits=1;
+    for (int t=v; t>=10; t/=10) digits++;
+    int n=max(3,digits);
+    for (int k=n-1; k>=0; k--) {score[k]=(char)('0'+v%10); v/=10;}
+    String suffix=" hits";
+    for (int k=0; k<suffix.length(); k++) score[n+k]=suffix.charAt(k);
+    scoreLength=n+suffix.length();
+  }
+
+  void show(boolean full) { // blits the whole layer, or only where the background was restored this frame
+    if (full || !(g instanceof PGraphicsJava2D)) {image(layer,0,0); return;}
+    java.awt.Graphics2D g2 = ((PGraphicsJava2D)g).g2;
+    for (int k=0; k<dirty.n; k++) {
+      int ax=floor(dirty.x0[k]), ay=floor(dirty.y0[k]), bx=ceil(min(dirty.x1[k],w)), by=ceil(min(dirty.y1[k],h));
+      if (ax<bx && ay<by) g2.drawImage(layer.image,ax,ay,bx,by,ax,ay,bx,by,null);
+    }
+  }
+}
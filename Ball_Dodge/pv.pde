@@ -110,6 +110,25 @@ P.scale(s,C): P=L(C,s,P);
 P.rotate(a): rotate P around origin by angle a in radians
 P.rotate(a,G): rotate P around G by angle a in radians
 
+Allocation-free variants for the per-frame hot path (write the result into the last argument O or W and return it; O or W may be one of the inputs)
+P(x,y,O): O=(x,y)
+Mouse(O): O=point at current mouse location
+V(P,Q,W): W=PQ
+S(s,V,W): W=sV
+S(U,V,W): W=U+V
+S(U,s,V,W): W=U+sV
+T(P,V,O): O=P+V
+T(P,s,V,O): O=P+sV
+L(A,s,B,O): O=A+sAB (L(A,.5,B,O) for the average)
+U(V,W): W=V/||V||
+R(V,W): W=V turned right 90 degrees
+R(V,c,s,W): W=V rotated by the angle a of cosine c=cos(a) and sine s=sin(a) (compute c,s once for many vectors)
+
+Scalar overloads (no points or vectors at all)
+d(x0,y0,x1,y1): distance, d2(x0,y0,x1,y1): distance squared
+n(x,y): norm, n2(x,y): norm squared, dot(ux,uy,vx,vy): dot product
+show(x,y,r): draws circle of radius r around (x,y)
+
 Intersections of edges or lines
 edgesIntersect(A,B,C,D): if edge(A,B) intersects edge(C,D)
 edgesIntersect(A,B,C,D,e): if edge(A,B) intersects edge(C,D)or touches it within distance e
@@ -130,7 +149,7 @@ vec V(pt P, pt Q) {return new vec(Q.x-P.x,Q.y-P.y);};
 void v(pt P) {vertex(P.x,P.y);};                                                                      // v(P): next point when drawing polygons between beginShape(); and endShape();
 void cross(pt P, float r) {line(P.x-r,P.y,P.x+r,P.y); line(P.x,P.y-r,P.x,P.y+r);};                    // cross(P,r): shows P as cross of length r
 void cross(pt P) {cross(P,2);};                                                                       // cross(P): shows P as small cross
-void show(pt P, float r) {ellipse(P.x, P.y, 2*r, 2*r);};                                              // show(P,r): draws circle of center r around P
+void show(pt P, float r) {disk(P.x, P.y, r);};                                                           // show(P,r): draws circle of center r around P
 void show(pt P) {ellipse(P.x, P.y, 4,4);};                                                            // show(P): draws small circle around point
 void show(pt P, pt Q) {line(P.x,P.y,Q.x,Q.y); };                                                      // show(P,Q): draws edge (P,Q)
 void arrow(pt P, pt Q) {arrow(P,V(P,Q)); }                                                            // arrow(P,Q): draws arrow from P to Q
@@ -202,6 +221,27 @@ vec U(pt P, pt Q) {return U(V(P,Q));};
 vec R(vec V) {return new vec(-V.y,V.x);};                                                             // R(V): V turned right 90 degrees (as seen on screen)
 vec R(vec U, float a) {vec W = U.makeRotatedBy(a);  return W ; };                                     // R(V,a): V rotated by a radians
 
+// allocation-free variants: write into the last argument and return it, never call new
+pt P(float x, float y, pt O) {O.x=x; O.y=y; return O; };                                              // P(x,y,O): O=(x,y)
+pt Mouse(pt O) {O.x=mouseX; O.y=mouseY; return O; };                                                  // Mouse(O): O=point at current mouse location
+vec V(pt P, pt Q, vec W) {W.x=Q.x-P.x; W.y=Q.y-P.y; return W; };                                      // V(P,Q,W): W=PQ
+vec S(float s, vec V, vec W) {W.x=s*V.x; W.y=s*V.y; return W; };                                      // S(s,V,W): W=sV
+vec S(vec U, vec V, vec W) {W.x=U.x+V.x; W.y=U.y+V.y; return W; };                                    // S(U,V,W): W=U+V
+vec S(vec U, float s, vec V, vec W) {W.x=U.x+s*V.x; W.y=U.y+s*V.y; return W; };                       // S(U,s,V,W): W=U+sV
+pt T(pt P, vec V, pt O) {O.x=P.x+V.x; O.y=P.y+V.y; return O; };                                       // T(P,V,O): O=P+V
+pt T(pt P, float s, vec V, pt O) {O.x=P.x+s*V.x; O.y=P.y+s*V.y; return O; };                          // T(P,s,V,O): O=P+sV
+pt L(pt A, float s, pt B, pt O) {float x=A.x+s*(B.x-A.x), y=A.y+s*(B.y-A.y); O.x=x; O.y=y; return O; }; // L(A,s,B,O): O=A+sAB (L(A,.5,B,O) for the average)
+vec U(vec V, vec W) {float n=n(V); if (n==0) {W.x=0; W.y=0;} else {W.x=V.x/n; W.y=V.y/n;} return W; };      // U(V,W): W=V/||V|| (the zero vector for a zero V)
+vec R(vec V, vec W) {float x=-V.y, y=V.x; W.x=x; W.y=y; return W; };                                 // R(V,W): W=V turned right 90 degrees
+vec R(vec V, float c, float s, vec W) {float x=V.x*c-V.y*s, y=V.x*s+V.y*c; W.x=x; W.y=y; return W; }; // R(V,c,s,W): W=V rotated by angle of cosine c, sine s
+// scalar overloads
+float d(float x0, float y0, float x1, float y1) {return sqrt(d2(x0,y0,x1,y1)); };                     // d(x0,y0,x1,y1): distance
+float d2(float x0, float y0, float x1, float y1) {return sq(x1-x0)+sq(y1-y0); };                      // d2(x0,y0,x1,y1): distance squared
+float dot(float ux, float uy, float vx, float vy) {return ux*vx+uy*vy; };                             // dot(ux,uy,vx,vy): dot product
+float n(float x, float y) {return sqrt(x*x+y*y); };                                                   // n(x,y): norm
+float n2(float x, float y) {return x*x+y*y; };                                                        // n2(x,y): norm squared
+void show(float x, float y, float r) {disk(x, y, r);};                                                   // show(x,y,r): draws circle of radius r around (x,y)
+
 //************************************************************************
 //**** ANGLES
 //************************************************************************
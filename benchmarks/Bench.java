@@ -0,0 +1,84 @@
+// Micro-benchmarks of the game's hot paths at 9, 1000 and 100000 balls, run headless. They are kept
+// out of the sketch folder so they do not ship with the game, and build with the JDK alone:
+//   javac -d out Ball_Dodge/*.java benchmarks/Bench.java && java -cp out Bench [seconds per iteration] [csv file]
+// Each benchmark is warmed up, then measured over several iterations; throughput (ops/s) and
+// allocation (bytes/op, from the thread allocation counter) are printed and optionally appended
+// to a CSV file so that numbers can be compared between commits.
+// The pt/vec helpers live in the sketch class P2, see GeometryBench.
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+class Bench {
+  interface Op {void run();}
+
+  static int[] COUNTS={9,1000,100000};
+  static int WARMUP=3, ITERATIONS=5;
+  static double seconds=0.5;
+  static volatile float sink;   // keeps results alive so the JIT cannot drop the work
+  static PrintWriter csv;
+  static String commit="";
+  static long calls, nanos;     // of the last iteration
+
+  static void bench(String name, int n, Op op) {
+    for (int k=0; k<WARMUP; k++) iteration(op);
+    double[] rate=new double[ITERATIONS];
+    long ops=0, bytes=0;
+    for (int k=0; k<ITERATIONS; k++) {
+      long b0=AllocationCheck.allocatedBytes(), b1=AllocationCheck.allocatedBytes();  // b1-b0 is what reading the counter itself costs
+      iteration(op);
+      bytes+=AllocationCheck.allocatedBytes()-b1-(b1-b0);
+      ops+=calls;
+      rate[k]=calls/(nanos*1e-9);
+    }
+    double mean=0, var=0;
+    for (double x : rate) mean+=x/ITERATIONS;
+    for (double x : rate) var+=(x-mean)*(x-mean)/Math.max(1,ITERATIONS-1);
+    double perOp=(double)bytes/ops;
+    System.out.println(String.format("%-12s %7d %16.1f +- %-12.1f ops/s %10.1f B/op", name, n, mean, Math.sqrt(var), perOp));
+    if (csv!=null) {csv.println(commit+","+name+","+n+","+mean+","+Math.sqrt(var)+","+perOp); csv.flush();}
+  }
+
+  static void iteration(Op op) { // runs op for about seconds into calls and nanos, allocating nothing itself
+    long c=0, t0=System.nanoTime(), end=t0+(long)(seconds*1e9), t;
+    do {
+      for (int k=0; k<16; k++) op.run();
+      c+=16;
+      t=System.nanoTime();
+    } while (t<end);
+    calls=c; nanos=t-t0;
+  }
+
+  static World world(int n) { // a world with n balls, stepped past the first launches
+    World w=new World(600,600);
+    w.balls.clear(); w.makeBalls(n);
+    for (int k=0; k<150; k++) w.step(300+k,300);
+    return w;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length>0) seconds=Double.parseDouble(args[0]);
+    if (args.length>1) {csv=new PrintWriter(new FileWriter(args[1],true)); commit=System.getProperty("bench.commit","");}
+    System.out.println(String.format("%-12s %7s %16s   %-12s       %10s", "benchmark", "balls", "throughput", "error", "alloc"));
+    for (final int n : COUNTS) {
+      final World w=world(n);
+      final Spring s=w.springs[0];
+      bench("move", n, new Op() {public void run() {w.moveBalls(0,w.balls.n);}});
+      bench("aim", n, new Op() {public void run() {for (int i=0; i<w.balls.n; i++) w.aim(i,310,290);}});
+      bench("aimBatch", n, new Op() {public void run() {BallStore b=w.balls; Aim.aim(b.hx,b.hy,b.gy,0,b.n,310,290,w.flight,b.vx,b.vy);}});
+      bench("predict", n, new Op() {public void run() {w.predict(310,290,40,-20); sink=w.tx;}});
+      bench("collisions", n, new Op() {public void run() {w.processCollisions();}});
+      bench("spring", n, new Op() {public void run() {s.update(310,290,30/w.hz);}});
+      final Snapshot snap=new Snapshot(Snapshot.room(w));
+      bench("snapshot", n, new Op() {public void run() {snap.take(w);}});
+      bench("restore", n, new Op() {public void run() {snap.restore(w);}});
+      bench("step", n, new Op() {int k=0; public void run() {k++; w.step(300+200*(float)Math.cos(k*0.05f),300+200*(float)Math.sin(k*0.05f));}});
+      w.setBody(SoftBody.NODES);
+      bench("body", n, new Op() {int k=0; public void run() {k++; w.body.step(300+200*(float)Math.cos(k*0.05f),300,w.dt,null);}});
+      bench("bodyHits", n, new Op() {public void run() {w.processCollisions();}});
+      w.setBody(0);
+    }
+    if (csv!=null) csv.close();
+  }
+}
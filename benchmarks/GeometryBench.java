@@ -0,0 +1,29 @@
+// Benchmarks of the sketch's pt/vec helpers d, U and R(vec,float) over 9, 1000 and 100000 points.
+// They are members of the sketch class P2, so this builds against the classes Processing compiles
+// for the sketch and needs a display. The checked-in applet/P2.jar predates World, so first export
+// the current sketch from Processing (File > Export), which rebuilds it from the tabs together with
+// Processing's core classes:
+//   javac -cp Ball_Dodge/applet/P2.jar -d out benchmarks/*.java
+//   java -cp out:Ball_Dodge/applet/P2.jar GeometryBench [seconds per iteration] [csv file]
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+class GeometryBench {
+  public static void main(String[] args) throws IOException {
+    if (args.length>0) Bench.seconds=Double.parseDouble(args[0]);
+    if (args.length>1) {Bench.csv=new PrintWriter(new FileWriter(args[1],true)); Bench.commit=System.getProperty("bench.commit","");}
+    final P2 p=new P2();
+    for (final int n : Bench.COUNTS) {
+      final P2.pt[] P=new P2.pt[n];
+      final P2.vec[] V=new P2.vec[n];
+      for (int i=0; i<n; i++) {P[i]=p.P(i%600,(i*7)%600); V[i]=p.V(1+i%5,2);}
+      final P2.pt O=p.P(300,300);
+      Bench.bench("d", n, new Bench.Op() {public void run() {float a=0; for (int i=0; i<n; i++) a+=p.d(O,P[i]); Bench.sink=a;}});
+      Bench.bench("U", n, new Bench.Op() {public void run() {float a=0; for (int i=0; i<n; i++) a+=p.U(V[i]).x; Bench.sink=a;}});
+      Bench.bench("R(vec,a)", n, new Bench.Op() {public void run() {float a=0; for (int i=0; i<n; i++) a+=p.R(V[i],0.3f).y; Bench.sink=a;}});
+    }
+    if (Bench.csv!=null) Bench.csv.close();
+  }
+}